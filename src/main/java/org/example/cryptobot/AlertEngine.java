@@ -0,0 +1,477 @@
+package org.example.cryptobot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Проверка ценовых алертов на каждом обновлении цены.
+// Для каждой валюты алерты лежат в отсортированных массивах: "выше" по возрастанию порога,
+// "ниже" по убыванию, процентные - по возрастанию процента отдельно для каждого окна.
+// Новая цена пересекает всегда префикс массива, поэтому обновление цены находит ровно
+// k сработавших алертов за O(k) без обхода остальных, а добавление стоит O(log n) поиска плюс сдвиг.
+// Процентный алерт сравнивает новую цену с ценой ровно на начало окна (минуту "сейчас минус окно"),
+// а не с минимумом или максимумом внутри окна: "вырос на 5% за 1 ч" значит "на 5% выше, чем час назад".
+// Колебание внутри окна, которое к текущей минуте вернулось к цене начала окна, алерт не вызывает.
+public class AlertEngine
+{
+    private static final Logger logger = LoggerFactory.getLogger(AlertEngine.class);
+
+    // Максимальное окно процентного алерта
+    public static final int MAX_WINDOW_MINUTES = 24 * 60;
+    // Цены приходят не каждую минуту (REST обновляет раз в несколько минут),
+    // поэтому цена начала окна ищется среди нескольких предыдущих минут
+    private static final int GAP_TOLERANCE_MINUTES = 10;
+
+    // Получатель сработавших алертов; вызывается вне блокировок движка
+    @FunctionalInterface
+    public interface Listener
+    {
+        // referencePrice - порог для ABOVE/BELOW, цена начала окна для CHANGE
+        void onAlert(PriceAlert alert, double price, double referencePrice);
+    }
+
+    private final Map<String, SymbolAlerts> bySymbol = new ConcurrentHashMap<>();
+    private final Map<Long, PriceAlert> byId = new ConcurrentHashMap<>();
+    private final Listener listener;
+
+    private final AtomicLong evaluations = new AtomicLong();
+    private final AtomicLong triggered = new AtomicLong();
+
+    public AlertEngine(Listener listener)
+    {
+        this.listener = listener;
+    }
+
+    // Загрузка алертов при старте: массивы строятся одной сортировкой, а не вставками по одному
+    public void load(Collection<PriceAlert> alerts)
+    {
+        Map<String, List<PriceAlert>> grouped = new HashMap<>();
+        for (PriceAlert alert : alerts)
+        {
+            grouped.computeIfAbsent(alert.getCurrency(), currency -> new ArrayList<>()).add(alert);
+        }
+
+        for (Map.Entry<String, List<PriceAlert>> group : grouped.entrySet())
+        {
+            bySymbol.compute(group.getKey(), (currency, existing) ->
+            {
+                SymbolAlerts symbolAlerts = existing != null ? existing : new SymbolAlerts();
+                synchronized (symbolAlerts)
+                {
+                    symbolAlerts.addAll(group.getValue());
+                }
+                return symbolAlerts;
+            });
+            for (PriceAlert alert : group.getValue())
+            {
+                byId.put(alert.getId(), alert);
+            }
+        }
+        logger.info("Загружено {} ценовых алертов по {} валютам", alerts.size(), grouped.size());
+    }
+
+    public void add(PriceAlert alert)
+    {
+        byId.put(alert.getId(), alert);
+        bySymbol.compute(alert.getCurrency(), (currency, existing) ->
+        {
+            SymbolAlerts symbolAlerts = existing != null ? existing : new SymbolAlerts();
+            synchronized (symbolAlerts)
+            {
+                symbolAlerts.add(alert);
+            }
+            return symbolAlerts;
+        });
+    }
+
+    // Удаление алерта пользователем; false, если алерт уже сработал или не существует
+    public boolean remove(long alertId)
+    {
+        PriceAlert alert = byId.remove(alertId);
+        if (alert == null)
+        {
+            return false;
+        }
+        bySymbol.computeIfPresent(alert.getCurrency(), (currency, symbolAlerts) ->
+        {
+            synchronized (symbolAlerts)
+            {
+                symbolAlerts.remove(alert);
+                return symbolAlerts.isEmpty() ? null : symbolAlerts;
+            }
+        });
+        return true;
+    }
+
+    // Валюты, по которым есть алерты: их цены должны обновляться постоянно
+    public Set<String> getSymbols()
+    {
+        return new HashSet<>(bySymbol.keySet());
+    }
+
+    public int size()
+    {
+        return byId.size();
+    }
+
+    public String getStats()
+    {
+        return String.format("алертов %d по %d валютам, проверок цены %d, сработало %d",
+                byId.size(), bySymbol.size(), evaluations.get(), triggered.get());
+    }
+
+    public void onPrice(String symbol, double price)
+    {
+        onPrice(symbol, price, System.currentTimeMillis());
+    }
+
+    // Проверка новой цены: срабатывают только пересеченные алерты, остальные не просматриваются
+    public void onPrice(String symbol, double price, long timestampMillis)
+    {
+        SymbolAlerts symbolAlerts = bySymbol.get(symbol);
+        if (symbolAlerts == null || !(price > 0))
+        {
+            return;
+        }
+        evaluations.incrementAndGet();
+
+        List<Triggered> fired = new ArrayList<>(0);
+        boolean empty;
+        synchronized (symbolAlerts)
+        {
+            symbolAlerts.evaluate(price, TimeUnit.MILLISECONDS.toMinutes(timestampMillis), fired);
+            empty = symbolAlerts.isEmpty();
+        }
+        if (fired.isEmpty())
+        {
+            return;
+        }
+
+        if (empty)
+        {
+            bySymbol.computeIfPresent(symbol, (currency, current) ->
+            {
+                synchronized (current)
+                {
+                    return current.isEmpty() ? null : current;
+                }
+            });
+        }
+
+        for (Triggered hit : fired)
+        {
+            // Алерт мог быть удален пользователем параллельно - тогда не сообщаем о нем
+            if (byId.remove(hit.alert.getId()) == null)
+            {
+                continue;
+            }
+            triggered.incrementAndGet();
+            try
+            {
+                listener.onAlert(hit.alert, price, hit.referencePrice);
+            }
+            catch (RuntimeException e)
+            {
+                logger.error("Ошибка при обработке сработавшего алерта {}", hit.alert.getId(), e);
+            }
+        }
+    }
+
+    private static final class Triggered
+    {
+        private final PriceAlert alert;
+        private final double referencePrice;
+
+        private Triggered(PriceAlert alert, double referencePrice)
+        {
+            this.alert = alert;
+            this.referencePrice = referencePrice;
+        }
+    }
+
+    // Алерты одной валюты; доступ под блокировкой объекта
+    private static final class SymbolAlerts
+    {
+        // Ключ "выше" - порог: срабатывают пороги <= цены.
+        // Ключ "ниже" - порог со знаком минус: срабатывают пороги >= цены
+        private final SortedAlerts above = new SortedAlerts();
+        private final SortedAlerts below = new SortedAlerts();
+        // Процентные алерты по окнам; ключ - процент: срабатывают проценты <= изменения
+        private final Map<Integer, SortedAlerts> changes = new HashMap<>();
+        private PriceHistory history;
+
+        private void add(PriceAlert alert)
+        {
+            book(alert).add(key(alert), alert);
+        }
+
+        private void addAll(List<PriceAlert> alerts)
+        {
+            // Раскладываем по массивам, каждый массив сортируется один раз
+            Map<SortedAlerts, List<PriceAlert>> byBook = new HashMap<>();
+            for (PriceAlert alert : alerts)
+            {
+                byBook.computeIfAbsent(book(alert), book -> new ArrayList<>()).add(alert);
+            }
+            for (Map.Entry<SortedAlerts, List<PriceAlert>> entry : byBook.entrySet())
+            {
+                entry.getKey().addAll(entry.getValue());
+            }
+        }
+
+        private void remove(PriceAlert alert)
+        {
+            SortedAlerts book = book(alert);
+            book.remove(key(alert), alert.getId());
+            if (alert.getType() == PriceAlert.Type.CHANGE && book.isEmpty())
+            {
+                changes.remove(alert.getWindowMinutes());
+                if (changes.isEmpty())
+                {
+                    history = null;
+                }
+            }
+        }
+
+        private boolean isEmpty()
+        {
+            return above.isEmpty() && below.isEmpty() && changes.isEmpty();
+        }
+
+        private void evaluate(double price, long minute, List<Triggered> fired)
+        {
+            above.pollUpTo(price, fired, Double.NaN);
+            below.pollUpTo(-price, fired, Double.NaN);
+
+            if (changes.isEmpty())
+            {
+                return;
+            }
+            history.record(minute, price);
+            // Изменение считается от цены начала окна, см. комментарий к классу
+            changes.entrySet().removeIf(window ->
+            {
+                double reference = history.priceAt(minute - window.getKey());
+                if (Double.isNaN(reference))
+                {
+                    return false;
+                }
+                double movePercent = Math.abs(price - reference) / reference * 100;
+                window.getValue().pollUpTo(movePercent, fired, reference);
+                return window.getValue().isEmpty();
+            });
+            if (changes.isEmpty())
+            {
+                history = null;
+            }
+        }
+
+        private SortedAlerts book(PriceAlert alert)
+        {
+            switch (alert.getType())
+            {
+                case ABOVE:
+                    return above;
+                case BELOW:
+                    return below;
+                default:
+                    if (history == null)
+                    {
+                        history = new PriceHistory();
+                    }
+                    return changes.computeIfAbsent(alert.getWindowMinutes(), window -> new SortedAlerts());
+            }
+        }
+
+        private static double key(PriceAlert alert)
+        {
+            return alert.getType() == PriceAlert.Type.BELOW ? -alert.getThreshold() : alert.getThreshold();
+        }
+    }
+
+    // Алерты, отсортированные по ключу. Срабатывает всегда префикс [head, k),
+    // поэтому сработавшие алерты отрезаются сдвигом head без копирования массива
+    private static final class SortedAlerts
+    {
+        private double[] keys = new double[4];
+        private PriceAlert[] alerts = new PriceAlert[4];
+        private int head;
+        private int tail;
+
+        private boolean isEmpty()
+        {
+            return head == tail;
+        }
+
+        // Все алерты с ключом <= value; referencePrice NaN означает "порог алерта"
+        private void pollUpTo(double value, List<Triggered> fired, double referencePrice)
+        {
+            while (head < tail && keys[head] <= value)
+            {
+                PriceAlert alert = alerts[head];
+                fired.add(new Triggered(alert, Double.isNaN(referencePrice) ? alert.getThreshold() : referencePrice));
+                alerts[head] = null;
+                head++;
+            }
+            if (head == tail)
+            {
+                head = 0;
+                tail = 0;
+            }
+        }
+
+        private void add(double key, PriceAlert alert)
+        {
+            ensureTailCapacity(1);
+            // Вставка после равных ключей сохраняет порядок создания
+            int position = upperBound(key);
+            System.arraycopy(keys, position, keys, position + 1, tail - position);
+            System.arraycopy(alerts, position, alerts, position + 1, tail - position);
+            keys[position] = key;
+            alerts[position] = alert;
+            tail++;
+        }
+
+        private void addAll(List<PriceAlert> added)
+        {
+            List<PriceAlert> merged = new ArrayList<>(tail - head + added.size());
+            for (int i = head; i < tail; i++)
+            {
+                merged.add(alerts[i]);
+            }
+            merged.addAll(added);
+            merged.sort(Comparator.comparingDouble(SymbolAlerts::key));
+
+            int capacity = Math.max(4, merged.size() + merged.size() / 4);
+            keys = new double[capacity];
+            alerts = new PriceAlert[capacity];
+            head = 0;
+            tail = merged.size();
+            for (int i = 0; i < tail; i++)
+            {
+                alerts[i] = merged.get(i);
+                keys[i] = SymbolAlerts.key(alerts[i]);
+            }
+        }
+
+        private boolean remove(double key, long alertId)
+        {
+            for (int i = lowerBound(key); i < tail && keys[i] == key; i++)
+            {
+                if (alerts[i].getId() == alertId)
+                {
+                    System.arraycopy(keys, i + 1, keys, i, tail - i - 1);
+                    System.arraycopy(alerts, i + 1, alerts, i, tail - i - 1);
+                    alerts[--tail] = null;
+                    if (head == tail)
+                    {
+                        head = 0;
+                        tail = 0;
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void ensureTailCapacity(int extra)
+        {
+            if (tail + extra <= keys.length)
+            {
+                return;
+            }
+            int size = tail - head;
+            // Если место освободилось в начале после срабатываний - сдвигаем, иначе расширяем
+            int capacity = size + extra <= keys.length / 2 ? keys.length : Math.max(4, keys.length * 2);
+            double[] newKeys = new double[capacity];
+            PriceAlert[] newAlerts = new PriceAlert[capacity];
+            System.arraycopy(keys, head, newKeys, 0, size);
+            System.arraycopy(alerts, head, newAlerts, 0, size);
+            keys = newKeys;
+            alerts = newAlerts;
+            head = 0;
+            tail = size;
+        }
+
+        // Первая позиция с ключом >= key
+        private int lowerBound(double key)
+        {
+            int low = head;
+            int high = tail;
+            while (low < high)
+            {
+                int middle = (low + high) >>> 1;
+                if (keys[middle] < key)
+                {
+                    low = middle + 1;
+                }
+                else
+                {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        // Первая позиция с ключом > key
+        private int upperBound(double key)
+        {
+            int low = head;
+            int high = tail;
+            while (low < high)
+            {
+                int middle = (low + high) >>> 1;
+                if (keys[middle] <= key)
+                {
+                    low = middle + 1;
+                }
+                else
+                {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    // Последняя цена каждой минуты за MAX_WINDOW_MINUTES в кольцевом буфере
+    private static final class PriceHistory
+    {
+        private static final int CAPACITY = MAX_WINDOW_MINUTES + GAP_TOLERANCE_MINUTES + 1;
+
+        private final long[] minutes = new long[CAPACITY];
+        private final double[] prices = new double[CAPACITY];
+
+        private void record(long minute, double price)
+        {
+            int slot = (int) (minute % CAPACITY);
+            minutes[slot] = minute;
+            prices[slot] = price;
+        }
+
+        // Цена на минуту minute или последняя известная перед ней; NaN, если истории еще нет
+        private double priceAt(long minute)
+        {
+            for (long m = minute; m > minute - GAP_TOLERANCE_MINUTES; m--)
+            {
+                int slot = (int) (m % CAPACITY);
+                if (minutes[slot] == m)
+                {
+                    return prices[slot];
+                }
+            }
+            return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package org.example.cryptobot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// Ограниченный по числу записей кэш с TTL на каждую запись и вытеснением LRU/LFU.
+// Чтение идет без блокировок: ConcurrentHashMap.get и обновление счетчиков доступа в записи.
+// Блокировка берется только при вытеснении, когда кэш переполнен.
+public class BoundedCache<K, V>
+{
+    public enum EvictionPolicy
+    {
+        LRU, LFU
+    }
+
+    // При переполнении вытесняем сразу часть записей, чтобы не сканировать кэш на каждой вставке
+    private static final double EVICTION_TARGET_RATIO = 0.9;
+
+    private final Map<K, CacheEntry<V>> entries = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final long defaultTtlMillis;
+    private final EvictionPolicy policy;
+    // Источник времени в миллисекундах; в тестах подменяется, чтобы "состарить" записи
+    private final LongSupplier clock;
+    private final Object evictionLock = new Object();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder totalLoadTimeNanos = new LongAdder();
+
+    public BoundedCache(int maxEntries, long defaultTtlMillis, EvictionPolicy policy)
+    {
+        this(maxEntries, defaultTtlMillis, policy, System::currentTimeMillis);
+    }
+
+    BoundedCache(int maxEntries, long defaultTtlMillis, EvictionPolicy policy, LongSupplier clock)
+    {
+        if (maxEntries <= 0)
+        {
+            throw new IllegalArgumentException("Размер кэша должен быть положительным: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.defaultTtlMillis = defaultTtlMillis;
+        this.policy = policy;
+        this.clock = clock;
+    }
+
+    // Запись кэша: значение, время создания и счетчики доступа для политики вытеснения
+    public static final class CacheEntry<V>
+    {
+        // Class-литерал параметризованного типа бывает только сырым
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<CacheEntry> FREQUENCY =
+                AtomicIntegerFieldUpdater.newUpdater(CacheEntry.class, "frequency");
+
+        private final V value;
+        private final long createdAt;
+        private final long ttlMillis;
+        private final LongSupplier clock;
+        private volatile long lastAccess;
+        private volatile int frequency;
+
+        private CacheEntry(V value, long ttlMillis, LongSupplier clock)
+        {
+            this.value = value;
+            this.clock = clock;
+            this.createdAt = clock.getAsLong();
+            this.ttlMillis = ttlMillis;
+            this.lastAccess = createdAt;
+        }
+
+        public V getValue()
+        {
+            return value;
+        }
+
+        public long getAge()
+        {
+            return clock.getAsLong() - createdAt;
+        }
+
+        public boolean isExpired()
+        {
+            return getAge() > ttlMillis;
+        }
+
+        private void recordAccess()
+        {
+            lastAccess = clock.getAsLong();
+            // Насыщение, чтобы счетчик популярной записи не переполнился
+            if (frequency < Integer.MAX_VALUE)
+            {
+                FREQUENCY.incrementAndGet(this);
+            }
+        }
+    }
+
+    // Значение, если оно есть в кэше и не устарело; учитывается в статистике попаданий
+    public V get(K key)
+    {
+        CacheEntry<V> entry = entries.get(key);
+        if (entry == null || entry.isExpired())
+        {
+            misses.increment();
+            return null;
+        }
+        entry.recordAccess();
+        hits.increment();
+        return entry.getValue();
+    }
+
+    // Запись как есть, в том числе устаревшая; не влияет на статистику и порядок вытеснения
+    public CacheEntry<V> getEntry(K key)
+    {
+        return entries.get(key);
+    }
+
+    public void put(K key, V value)
+    {
+        put(key, value, defaultTtlMillis);
+    }
+
+    // При замене значения счетчик обращений переходит к новой записи: иначе для LFU
+    // часто читаемый, но регулярно обновляемый ключ выглядел бы самым непопулярным
+    public void put(K key, V value, long ttlMillis)
+    {
+        CacheEntry<V> entry = new CacheEntry<>(value, ttlMillis, clock);
+        entries.compute(key, (existingKey, previous) ->
+        {
+            if (previous != null)
+            {
+                entry.frequency = previous.frequency;
+            }
+            return entry;
+        });
+        if (entries.size() > maxEntries)
+        {
+            evict();
+        }
+    }
+
+    public void remove(K key)
+    {
+        entries.remove(key);
+    }
+
+    public void clear()
+    {
+        entries.clear();
+    }
+
+    public int size()
+    {
+        return entries.size();
+    }
+
+    // Учет времени загрузки значения из внешнего источника
+    public void recordLoad(long loadTimeNanos)
+    {
+        loads.increment();
+        totalLoadTimeNanos.add(loadTimeNanos);
+    }
+
+    public CacheStats getStats()
+    {
+        return new CacheStats(entries.size(), hits.sum(), misses.sum(), evictions.sum(),
+                loads.sum(), totalLoadTimeNanos.sum());
+    }
+
+    private void evict()
+    {
+        synchronized (evictionLock)
+        {
+            int target = (int) (maxEntries * EVICTION_TARGET_RATIO);
+            if (entries.size() <= maxEntries)
+            {
+                return;
+            }
+
+            // Сначала удаляем устаревшие записи, затем наименее ценные по политике.
+            // Счетчики доступа копируются заранее: читатели меняют их во время сортировки
+            List<EvictionCandidate<K, V>> candidates = new ArrayList<>(entries.size());
+            for (Map.Entry<K, CacheEntry<V>> entry : entries.entrySet())
+            {
+                candidates.add(new EvictionCandidate<>(entry.getKey(), entry.getValue()));
+            }
+            candidates.sort((left, right) ->
+            {
+                if (left.expired != right.expired)
+                {
+                    return left.expired ? -1 : 1;
+                }
+                if (policy == EvictionPolicy.LFU && left.frequency != right.frequency)
+                {
+                    return Integer.compare(left.frequency, right.frequency);
+                }
+                return Long.compare(left.lastAccess, right.lastAccess);
+            });
+
+            int toRemove = candidates.size() - target;
+            for (int i = 0; i < toRemove; i++)
+            {
+                EvictionCandidate<K, V> candidate = candidates.get(i);
+                if (entries.remove(candidate.key, candidate.entry))
+                {
+                    evictions.increment();
+                }
+            }
+        }
+    }
+
+    private static final class EvictionCandidate<K, V>
+    {
+        private final K key;
+        private final CacheEntry<V> entry;
+        private final boolean expired;
+        private final int frequency;
+        private final long lastAccess;
+
+        private EvictionCandidate(K key, CacheEntry<V> entry)
+        {
+            this.key = key;
+            this.entry = entry;
+            this.expired = entry.isExpired();
+            this.frequency = entry.frequency;
+            this.lastAccess = entry.lastAccess;
+        }
+    }
+
+    // Снимок статистики кэша
+    public static class CacheStats
+    {
+        private final int size;
+        private final long hitCount;
+        private final long missCount;
+        private final long evictionCount;
+        private final long loadCount;
+        private final long totalLoadTimeNanos;
+
+        public CacheStats(int size, long hitCount, long missCount, long evictionCount,
+                          long loadCount, long totalLoadTimeNanos)
+        {
+            this.size = size;
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+            this.loadCount = loadCount;
+            this.totalLoadTimeNanos = totalLoadTimeNanos;
+        }
+
+        public int getSize()
+        {
+            return size;
+        }
+
+        public long getHitCount()
+        {
+            return hitCount;
+        }
+
+        public long getMissCount()
+        {
+            return missCount;
+        }
+
+        public long getEvictionCount()
+        {
+            return evictionCount;
+        }
+
+        public long getLoadCount()
+        {
+            return loadCount;
+        }
+
+        public double getHitRate()
+        {
+            long requests = hitCount + missCount;
+            return requests == 0 ? 1.0 : (double) hitCount / requests;
+        }
+
+        public double getAverageLoadTimeMillis()
+        {
+            return loadCount == 0 ? 0 : totalLoadTimeNanos / 1_000_000.0 / loadCount;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("size=%d, hits=%d, misses=%d, hitRate=%.2f, evictions=%d, loads=%d, avgLoad=%.1fms",
+                    size, hitCount, missCount, getHitRate(), evictionCount, loadCount, getAverageLoadTimeMillis());
+        }
+    }
+}
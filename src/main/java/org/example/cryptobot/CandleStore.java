@@ -0,0 +1,153 @@
+package org.example.cryptobot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+// Локальное хранилище свечей в таблице candles с ключом (symbol, timeframe, time).
+// История дополняется: с API загружаются свечи новее последней сохраненной.
+// Сохраненный диапазон всегда непрерывен: при полной загрузке окна более старые свечи
+// удаляются, иначе после долгого перерыва между ними и новым окном осталась бы дыра.
+public class CandleStore
+{
+    private static final Logger logger = LoggerFactory.getLogger(CandleStore.class);
+
+    private final ConnectionManager connections;
+
+    public CandleStore(ConnectionManager connections)
+    {
+        this.connections = connections;
+    }
+
+    // Диапазон сохраненных свечей (время в секундах)
+    public static class StoredRange
+    {
+        private final long firstTime;
+        private final long lastTime;
+
+        public StoredRange(long firstTime, long lastTime)
+        {
+            this.firstTime = firstTime;
+            this.lastTime = lastTime;
+        }
+
+        public long getFirstTime()
+        {
+            return firstTime;
+        }
+
+        public long getLastTime()
+        {
+            return lastTime;
+        }
+    }
+
+    // Возвращает null, если по символу и интервалу еще ничего не сохранено
+    public StoredRange getStoredRange(String symbol, String timeframe) throws SQLException
+    {
+        return connections.read(conn ->
+        {
+            PreparedStatement stmt = conn.prepare(
+                    "SELECT MIN(time) AS first_time, MAX(time) AS last_time FROM candles " +
+                            "WHERE symbol = ? AND timeframe = ?");
+            stmt.setString(1, symbol);
+            stmt.setString(2, timeframe);
+            try (ResultSet rs = stmt.executeQuery())
+            {
+                if (rs.next())
+                {
+                    long lastTime = rs.getLong("last_time");
+                    if (!rs.wasNull())
+                    {
+                        return new StoredRange(rs.getLong("first_time"), lastTime);
+                    }
+                }
+                return null;
+            }
+        });
+    }
+
+    public HistoricalSeries load(String symbol, String timeframe, long fromTime) throws SQLException
+    {
+        return connections.read(conn ->
+        {
+            PreparedStatement stmt = conn.prepare(
+                    "SELECT time, open, high, low, close, volume FROM candles " +
+                            "WHERE symbol = ? AND timeframe = ? AND time >= ? ORDER BY time");
+            stmt.setString(1, symbol);
+            stmt.setString(2, timeframe);
+            stmt.setLong(3, fromTime);
+            HistoricalSeries.Builder candles = new HistoricalSeries.Builder(64);
+            try (ResultSet rs = stmt.executeQuery())
+            {
+                while (rs.next())
+                {
+                    candles.add(
+                            rs.getLong(1),
+                            rs.getDouble(2),
+                            rs.getDouble(3),
+                            rs.getDouble(4),
+                            rs.getDouble(5),
+                            rs.getDouble(6)
+                    );
+                }
+            }
+            return candles.build();
+        });
+    }
+
+    // Сохранение свечей одной транзакцией; последняя (незакрытая) свеча перезаписывается
+    public void save(String symbol, String timeframe, HistoricalSeries candles) throws SQLException
+    {
+        write(symbol, timeframe, candles, false);
+    }
+
+    // Сохранение полностью загруженного окна: свечи старше его начала удаляются в той же транзакции
+    public void saveWindow(String symbol, String timeframe, HistoricalSeries candles) throws SQLException
+    {
+        write(symbol, timeframe, candles, true);
+    }
+
+    private void write(String symbol, String timeframe, HistoricalSeries candles, boolean dropOlder) throws SQLException
+    {
+        if (candles.size() == 0)
+        {
+            return;
+        }
+        connections.writeInTransaction(conn ->
+        {
+            if (dropOlder)
+            {
+                PreparedStatement delete = conn.prepare(
+                        "DELETE FROM candles WHERE symbol = ? AND timeframe = ? AND time < ?");
+                delete.setString(1, symbol);
+                delete.setString(2, timeframe);
+                delete.setLong(3, candles.getTime(0));
+                delete.executeUpdate();
+            }
+
+            PreparedStatement stmt = conn.prepare(
+                    "INSERT OR REPLACE INTO candles (symbol, timeframe, time, open, high, low, close, volume) " +
+                            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+            HistoricalSeries.Cursor candle = candles.cursor();
+            while (candle.next())
+            {
+                stmt.setString(1, symbol);
+                stmt.setString(2, timeframe);
+                stmt.setLong(3, candle.time());
+                stmt.setDouble(4, candle.open());
+                stmt.setDouble(5, candle.high());
+                stmt.setDouble(6, candle.low());
+                stmt.setDouble(7, candle.close());
+                stmt.setDouble(8, candle.volume());
+                stmt.addBatch();
+            }
+            return stmt.executeBatch();
+        });
+
+        logger.debug("Сохранено {} свечей {} ({})", candles.size(), symbol, timeframe);
+    }
+}
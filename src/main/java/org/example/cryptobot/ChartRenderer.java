@@ -0,0 +1,164 @@
+package org.example.cryptobot;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+// Отрисовка линейного графика цены в PNG средствами Java2D (headless), без внешних сервисов
+public class ChartRenderer
+{
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 450;
+    private static final int PADDING_LEFT = 80;
+    private static final int PADDING_RIGHT = 20;
+    private static final int PADDING_TOP = 40;
+    private static final int PADDING_BOTTOM = 40;
+    private static final int GRID_LINES = 5;
+    private static final int MAX_X_LABELS = 10;
+
+    private static final Color LINE_COLOR = new Color(54, 162, 235);
+    private static final Color FILL_COLOR = new Color(54, 162, 235, 26);
+    private static final Color GRID_COLOR = new Color(230, 230, 230);
+    private static final Color TEXT_COLOR = new Color(102, 102, 102);
+    private static final Font LABEL_FONT = new Font(Font.SANS_SERIF, Font.PLAIN, 12);
+    private static final Font TITLE_FONT = new Font(Font.SANS_SERIF, Font.BOLD, 14);
+
+    public byte[] renderLineChart(String currency, HistoricalSeries history) throws IOException
+    {
+        if (history.isEmpty())
+        {
+            throw new IllegalArgumentException("Нет данных для построения графика " + currency);
+        }
+
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try
+        {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, WIDTH, HEIGHT);
+
+            double min = Double.MAX_VALUE;
+            double max = -Double.MAX_VALUE;
+            HistoricalSeries.Cursor candle = history.cursor();
+            while (candle.next())
+            {
+                min = Math.min(min, candle.close());
+                max = Math.max(max, candle.close());
+            }
+            // Ровная линия: раздвигаем шкалу, чтобы не делить на ноль
+            if (max - min < 1e-12)
+            {
+                double delta = Math.max(Math.abs(max) * 0.01, 1e-6);
+                min -= delta;
+                max += delta;
+            }
+
+            int plotWidth = WIDTH - PADDING_LEFT - PADDING_RIGHT;
+            int plotHeight = HEIGHT - PADDING_TOP - PADDING_BOTTOM;
+
+            drawGrid(g, min, max, plotWidth, plotHeight);
+            drawXLabels(g, history, plotWidth, plotHeight);
+
+            // Линия цены и заливка под ней
+            Path2D.Double line = new Path2D.Double();
+            int count = history.size();
+            for (int i = 0; i < count; i++)
+            {
+                double x = xFor(i, count, plotWidth);
+                double y = PADDING_TOP + plotHeight - (history.getClose(i) - min) / (max - min) * plotHeight;
+                if (i == 0)
+                {
+                    line.moveTo(x, y);
+                }
+                else
+                {
+                    line.lineTo(x, y);
+                }
+            }
+
+            Path2D.Double area = new Path2D.Double(line);
+            area.lineTo(xFor(count - 1, count, plotWidth), PADDING_TOP + plotHeight);
+            area.lineTo(xFor(0, count, plotWidth), PADDING_TOP + plotHeight);
+            area.closePath();
+            g.setColor(FILL_COLOR);
+            g.fill(area);
+
+            g.setColor(LINE_COLOR);
+            g.setStroke(new BasicStroke(2f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+            g.draw(line);
+
+            // Заголовок-легенда
+            g.setFont(TITLE_FONT);
+            g.setColor(LINE_COLOR);
+            g.fillRect(PADDING_LEFT, 14, 30, 12);
+            g.setColor(TEXT_COLOR);
+            g.drawString(currency + "/USD", PADDING_LEFT + 38, 25);
+        }
+        finally
+        {
+            g.dispose();
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream(64 * 1024);
+        ImageIO.write(image, "png", output);
+        return output.toByteArray();
+    }
+
+    private void drawGrid(Graphics2D g, double min, double max, int plotWidth, int plotHeight)
+    {
+        g.setFont(LABEL_FONT);
+        FontMetrics metrics = g.getFontMetrics();
+        for (int i = 0; i <= GRID_LINES; i++)
+        {
+            int y = PADDING_TOP + plotHeight - plotHeight * i / GRID_LINES;
+            g.setColor(GRID_COLOR);
+            g.drawLine(PADDING_LEFT, y, PADDING_LEFT + plotWidth, y);
+
+            String label = formatPrice(min + (max - min) * i / GRID_LINES);
+            g.setColor(TEXT_COLOR);
+            g.drawString(label, PADDING_LEFT - 8 - metrics.stringWidth(label), y + metrics.getAscent() / 2);
+        }
+    }
+
+    private void drawXLabels(Graphics2D g, HistoricalSeries history, int plotWidth, int plotHeight)
+    {
+        g.setFont(LABEL_FONT);
+        g.setColor(TEXT_COLOR);
+        FontMetrics metrics = g.getFontMetrics();
+        SimpleDateFormat sdf = new SimpleDateFormat("dd.MM");
+
+        int count = history.size();
+        int step = Math.max(1, (int) Math.ceil((double) count / MAX_X_LABELS));
+        for (int i = 0; i < count; i += step)
+        {
+            String label = sdf.format(new Date(history.getTime(i) * 1000));
+            int x = (int) xFor(i, count, plotWidth);
+            g.drawString(label, x - metrics.stringWidth(label) / 2, PADDING_TOP + plotHeight + 20);
+        }
+    }
+
+    private double xFor(int index, int count, int plotWidth)
+    {
+        return count == 1 ? PADDING_LEFT + plotWidth / 2.0 : PADDING_LEFT + (double) plotWidth * index / (count - 1);
+    }
+
+    private String formatPrice(double price)
+    {
+        if (Math.abs(price) >= 1000)
+        {
+            return String.format("%,.0f", price);
+        }
+        if (Math.abs(price) >= 1)
+        {
+            return String.format("%.2f", price);
+        }
+        return String.format("%.6f", price);
+    }
+}
@@ -0,0 +1,122 @@
+package org.example.cryptobot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.function.LongSupplier;
+
+// Предохранитель для внешнего API: после failureThreshold ошибок подряд запросы
+// сразу отклоняются на openMillis, затем пропускается один пробный запрос.
+// Успешный пробный запрос закрывает предохранитель, ошибка снова открывает его.
+public class CircuitBreaker
+{
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State
+    {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    // Запрос отклонен без обращения к API, потому что предохранитель открыт
+    public static class OpenException extends IOException
+    {
+        private static final long serialVersionUID = 1L;
+
+        public OpenException(String name, long retryInMillis)
+        {
+            super("Сервис " + name + " временно недоступен, повтор через " + Math.max(1, retryInMillis / 1000) + " с");
+        }
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openMillis;
+    // Источник времени в миллисекундах; в тестах подменяется, чтобы не ждать openMillis
+    private final LongSupplier clock;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private long trialStartedAt;
+    private long rejectedCount;
+
+    public CircuitBreaker(String name, int failureThreshold, long openMillis)
+    {
+        this(name, failureThreshold, openMillis, System::currentTimeMillis);
+    }
+
+    CircuitBreaker(String name, int failureThreshold, long openMillis, LongSupplier clock)
+    {
+        if (failureThreshold <= 0)
+        {
+            throw new IllegalArgumentException("Порог ошибок должен быть положительным: " + failureThreshold);
+        }
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.clock = clock;
+    }
+
+    // Разрешение на запрос; при отказе выбрасывается OpenException
+    public synchronized void acquire() throws OpenException
+    {
+        long now = clock.getAsLong();
+        switch (state)
+        {
+            case CLOSED:
+                return;
+            case OPEN:
+                if (now - openedAt >= openMillis)
+                {
+                    state = State.HALF_OPEN;
+                    trialStartedAt = now;
+                    logger.info("Предохранитель {}: пробный запрос", name);
+                    return;
+                }
+                break;
+            case HALF_OPEN:
+                // Пробный запрос мог потеряться (например, был отменен) - разрешаем новый
+                if (now - trialStartedAt >= openMillis)
+                {
+                    trialStartedAt = now;
+                    return;
+                }
+                break;
+        }
+        rejectedCount++;
+        throw new OpenException(name, openMillis - (now - openedAt));
+    }
+
+    public synchronized void recordSuccess()
+    {
+        consecutiveFailures = 0;
+        if (state != State.CLOSED)
+        {
+            state = State.CLOSED;
+            logger.info("Предохранитель {} закрыт: API снова отвечает", name);
+        }
+    }
+
+    public synchronized void recordFailure()
+    {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold))
+        {
+            state = State.OPEN;
+            openedAt = clock.getAsLong();
+            logger.warn("Предохранитель {} открыт после {} ошибок подряд, запросы отклоняются {} мс",
+                    name, consecutiveFailures, openMillis);
+        }
+    }
+
+    public synchronized State getState()
+    {
+        return state;
+    }
+
+    public synchronized long getRejectedCount()
+    {
+        return rejectedCount;
+    }
+}
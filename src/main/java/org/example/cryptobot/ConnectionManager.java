@@ -0,0 +1,224 @@
+package org.example.cryptobot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Долгоживущие соединения с SQLite: одно соединение для записи и небольшой пул для чтения.
+// База открывается в режиме WAL, поэтому чтение не блокируется записью.
+// Каждое соединение кэширует свои PreparedStatement, чтобы не разбирать SQL на каждом вызове.
+public class ConnectionManager implements AutoCloseable
+{
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionManager.class);
+
+    private static final int READER_POOL_SIZE = 4;
+    private static final long ACQUIRE_TIMEOUT_SECONDS = 10;
+
+    // Работа с соединением; соединение нельзя использовать за пределами вызова
+    @FunctionalInterface
+    public interface SqlWork<T>
+    {
+        T execute(PooledConnection conn) throws SQLException;
+    }
+
+    // Соединение с кэшем подготовленных запросов
+    public static class PooledConnection
+    {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        private PooledConnection(Connection connection)
+        {
+            this.connection = connection;
+        }
+
+        // Подготовленный запрос из кэша соединения; параметры и пакет предыдущего вызова сбрасываются.
+        // Если executeBatch завершился ошибкой, строки пакета остаются в запросе, и без clearBatch
+        // следующий вызов выполнил бы их повторно
+        public PreparedStatement prepare(String sql) throws SQLException
+        {
+            PreparedStatement stmt = statements.get(sql);
+            if (stmt == null)
+            {
+                stmt = connection.prepareStatement(sql);
+                statements.put(sql, stmt);
+            }
+            else
+            {
+                stmt.clearParameters();
+                stmt.clearBatch();
+            }
+            return stmt;
+        }
+
+        public Connection getConnection()
+        {
+            return connection;
+        }
+
+        private void close()
+        {
+            for (PreparedStatement stmt : statements.values())
+            {
+                try
+                {
+                    stmt.close();
+                }
+                catch (SQLException e)
+                {
+                    logger.warn("Ошибка при закрытии запроса", e);
+                }
+            }
+            statements.clear();
+            try
+            {
+                connection.close();
+            }
+            catch (SQLException e)
+            {
+                logger.warn("Ошибка при закрытии соединения", e);
+            }
+        }
+    }
+
+    private final PooledConnection writer;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final BlockingQueue<PooledConnection> readers = new ArrayBlockingQueue<>(READER_POOL_SIZE);
+
+    public ConnectionManager(String url)
+    {
+        try
+        {
+            // Соединение для записи создается первым: оно переводит базу в режим WAL
+            writer = new PooledConnection(open(url, false));
+            for (int i = 0; i < READER_POOL_SIZE; i++)
+            {
+                readers.add(new PooledConnection(open(url, true)));
+            }
+        }
+        catch (SQLException e)
+        {
+            throw new IllegalStateException("Не удалось открыть базу данных " + url, e);
+        }
+    }
+
+    private static Connection open(String url, boolean readOnly) throws SQLException
+    {
+        Connection conn = DriverManager.getConnection(url);
+        try (Statement stmt = conn.createStatement())
+        {
+            stmt.execute("PRAGMA busy_timeout = 5000");
+            if (!readOnly)
+            {
+                stmt.execute("PRAGMA journal_mode = WAL");
+            }
+            // В режиме WAL synchronous=NORMAL безопасен и не делает fsync на каждую транзакцию
+            stmt.execute("PRAGMA synchronous = NORMAL");
+            stmt.execute("PRAGMA temp_store = MEMORY");
+            stmt.execute("PRAGMA cache_size = -8000");
+            if (readOnly)
+            {
+                stmt.execute("PRAGMA query_only = ON");
+            }
+        }
+        return conn;
+    }
+
+    public <T> T read(SqlWork<T> work) throws SQLException
+    {
+        PooledConnection conn;
+        try
+        {
+            conn = readers.poll(ACQUIRE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Ожидание соединения для чтения прервано", e);
+        }
+        if (conn == null)
+        {
+            throw new SQLException("Нет свободного соединения для чтения");
+        }
+
+        try
+        {
+            return work.execute(conn);
+        }
+        finally
+        {
+            readers.add(conn);
+        }
+    }
+
+    // Запись в режиме автокоммита: каждый запрос фиксируется сразу
+    public <T> T write(SqlWork<T> work) throws SQLException
+    {
+        writeLock.lock();
+        try
+        {
+            return work.execute(writer);
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
+    }
+
+    // Несколько изменений одной транзакцией: все или ничего
+    public <T> T writeInTransaction(SqlWork<T> work) throws SQLException
+    {
+        writeLock.lock();
+        Connection conn = writer.getConnection();
+        try
+        {
+            conn.setAutoCommit(false);
+            T result = work.execute(writer);
+            conn.commit();
+            return result;
+        }
+        catch (SQLException | RuntimeException e)
+        {
+            conn.rollback();
+            throw e;
+        }
+        finally
+        {
+            try
+            {
+                conn.setAutoCommit(true);
+            }
+            finally
+            {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        writeLock.lock();
+        try
+        {
+            writer.close();
+        }
+        finally
+        {
+            writeLock.unlock();
+        }
+
+        PooledConnection conn;
+        while ((conn = readers.poll()) != null)
+        {
+            conn.close();
+        }
+    }
+}
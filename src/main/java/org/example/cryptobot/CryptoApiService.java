@@ -1,9 +1,12 @@
 package org.example.cryptobot;
 
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
-import org.json.JSONArray;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,115 +14,1063 @@ import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMa
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
 
 
 public class CryptoApiService
 {
     private static final Logger logger = LoggerFactory.getLogger(CryptoApiService.class);
 
+    private static final String API_BASE_URL = "https://min-api.cryptocompare.com";
+
     // Время жизни кэша в миллисекундах (5 минут)
     private static final long CACHE_TTL = TimeUnit.MINUTES.toMillis(5);
 
+    // Ограничение CryptoCompare на длину параметра fsyms в запросе pricemulti
+    private static final int MAX_FSYMS_LENGTH = 300;
+
+    // Период фонового обновления популярных валют (refresh-ahead)
+    private static final long REFRESH_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+    // Цена обновляется заранее, если до истечения кэша осталось меньше этого запаса
+    private static final long REFRESH_AHEAD_MARGIN = 2 * REFRESH_INTERVAL;
+    // Валюта перестает обновляться в фоне, если ее не запрашивали это время
+    private static final long HOT_SYMBOL_IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(30);
+
+    // Ограничения параллельных запросов OkHttp: все запросы идут на один хост min-api.cryptocompare.com
+    private static final int MAX_REQUESTS = 64;
+    private static final int MAX_REQUESTS_PER_HOST = 16;
+    // Пул keep-alive соединений, общий для всех запросов сервиса
+    private static final int MAX_IDLE_CONNECTIONS = 16;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+
+    // Предохранитель: после стольких ошибок API подряд запросы отклоняются сразу, без ожидания таймаута
+    private static final int CIRCUIT_FAILURE_THRESHOLD = 5;
+    private static final long CIRCUIT_OPEN_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    // Дублирующий запрос цены отправляется, если ответа нет дольше HEDGE_PERCENTILE обычных задержек
+    private static final double HEDGE_PERCENTILE = 0.95;
+    private static final long HEDGE_MIN_DELAY_MILLIS = 100;
+    // Пока задержек мало, перцентиль ненадежен и дублирующие запросы не отправляются
+    private static final int HEDGE_MIN_SAMPLES = 20;
+    private static final int LATENCY_WINDOW_SIZE = 256;
+
+    // Устаревшая цена отдается сразу, а в фоне запрашивается новая (stale-while-revalidate)
+    private static final long STALE_WHILE_REVALIDATE = TimeUnit.MINUTES.toMillis(5);
+    // При ошибке API отдается устаревшая цена не старше этого значения (stale-if-error)
+    private static final long STALE_IF_ERROR = TimeUnit.HOURS.toMillis(1);
+
+    // Поток котировок CryptoCompare; для подключения нужен API-ключ
+    private static final String STREAM_URL = "wss://streamer.cryptocompare.com/v2?api_key=";
+    // Цена с табло используется, если обновлялась не раньше этого времени. Пока соединение
+    // живо, индекс присылается при каждом изменении цены, так что тишина значит неизменную цену
+    private static final long BOARD_MAX_AGE = CACHE_TTL;
+
+    // Максимальное число валют в кэше цен: ручной ввод позволяет запрашивать произвольные символы
+    private static final int MAX_CACHED_PRICES = 2000;
+
     // Кэш для хранения цен валют
-    private final Map<String, CachedPrice> priceCache = new ConcurrentHashMap<>();
+    private final BoundedCache<String, Double> priceCache;
+
+    // Кэш исторических данных для графиков: ключ "символ:интервал"
+    private static final int MAX_CACHED_HISTORIES = 500;
+    private final BoundedCache<String, CachedHistory> historyCache =
+            new BoundedCache<>(MAX_CACHED_HISTORIES, CACHE_TTL, BoundedCache.EvictionPolicy.LFU);
+
+    // Выполняющиеся запросы цен: одновременные промахи кэша по одной валюте ждут один запрос
+    private final Map<String, CompletableFuture<Double>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalescedCalls = new AtomicLong();
+
+    // Востребованные валюты и время последнего обращения к ним
+    private final Map<String, Long> hotSymbols = new ConcurrentHashMap<>();
+    private ScheduledExecutorService refreshScheduler;
+
+    private final CircuitBreaker circuitBreaker;
+    private final LatencyWindow latencies = new LatencyWindow(LATENCY_WINDOW_SIZE);
+    private final ScheduledExecutorService hedgeTimer;
+    private volatile boolean hedgingEnabled;
+    private final AtomicLong hedgedRequests = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong staleServed = new AtomicLong();
+
+    // Табло цен из потока котировок; пустое, пока поток не запущен или не подключен
+    private final PriceBoard priceBoard = new PriceBoard();
+    private volatile PriceStream priceStream;
+    private final AtomicLong boardHits = new AtomicLong();
+
+    // Справочник символов из списка монет: проверка валюты без запроса к API
+    private static final String COIN_LIST_PATH = "/data/all/coinlist?summary=true";
+    private static final long SYMBOL_REGISTRY_REFRESH = TimeUnit.HOURS.toMillis(6);
+    private static final long SYMBOL_REGISTRY_RETRY = TimeUnit.MINUTES.toMillis(5);
+    private final SymbolRegistry symbolRegistry = new SymbolRegistry();
+    private ScheduledExecutorService registryScheduler;
+
+    // Символы, которых нет в API, пока справочник не загружен: опечатки не повторяют запрос
+    private static final int MAX_UNKNOWN_SYMBOLS = 1000;
+    private static final long UNKNOWN_SYMBOL_TTL = TimeUnit.HOURS.toMillis(1);
+    private final BoundedCache<String, Boolean> unknownSymbols =
+            new BoundedCache<>(MAX_UNKNOWN_SYMBOLS, UNKNOWN_SYMBOL_TTL, BoundedCache.EvictionPolicy.LRU);
+
+    // Получатели каждой новой цены (проверка алертов) и источники валют, которые нужно
+    // обновлять постоянно, даже если их давно не запрашивали
+    private final List<PriceListener> priceListeners = new CopyOnWriteArrayList<>();
+    private final List<Supplier<Collection<String>>> watchSources = new CopyOnWriteArrayList<>();
+
+    private final OkHttpClient client;
+    private final CandleStore candleStore;
+    private final String apiBaseUrl;
+
+    public CryptoApiService(CandleStore candleStore)
+    {
+        this(candleStore, API_BASE_URL, System::currentTimeMillis);
+    }
+
+    // apiBaseUrl и clock задаются в тестах: локальный сервер вместо CryptoCompare и управляемое
+    // время для устаревания кэша цен и предохранителя
+    CryptoApiService(CandleStore candleStore, String apiBaseUrl, LongSupplier clock)
+    {
+        this.candleStore = candleStore;
+        this.apiBaseUrl = apiBaseUrl;
+        this.priceCache = new BoundedCache<>(MAX_CACHED_PRICES, CACHE_TTL, BoundedCache.EvictionPolicy.LRU, clock);
+        this.circuitBreaker = new CircuitBreaker("cryptocompare", CIRCUIT_FAILURE_THRESHOLD, CIRCUIT_OPEN_MILLIS, clock);
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(MAX_REQUESTS);
+        dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+
+        OkHttpClient.Builder builder = new OkHttpClient.Builder();
+        builder.connectTimeout(5, TimeUnit.SECONDS);
+        builder.readTimeout(5, TimeUnit.SECONDS);
+        builder.dispatcher(dispatcher);
+        builder.connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES));
+        this.client = builder.build();
+
+        this.hedgeTimer = Executors.newSingleThreadScheduledExecutor(runnable ->
+        {
+            Thread thread = new Thread(runnable, "api-hedge-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Дублирующие запросы цен: снижают хвостовые задержки ценой небольшого числа лишних запросов
+    public void setHedgingEnabled(boolean hedgingEnabled)
+    {
+        this.hedgingEnabled = hedgingEnabled;
+        logger.info("Дублирующие запросы цен {}", hedgingEnabled ? "включены" : "выключены");
+    }
 
-    // Класс для хранения цены и времени кэширования
-    private static class CachedPrice
+    // Разбор ответа; вызывается в потоке OkHttp, ответ закрывается после вызова
+    @FunctionalInterface
+    private interface ResponseHandler<T>
     {
-        private final double price;
-        private final long timestamp;
+        T handle(Response response) throws IOException;
+    }
+
+    // Асинхронный запрос через enqueue: поток не занимается на время ожидания ответа.
+    // Пока предохранитель открыт, запрос сразу завершается CircuitBreaker.OpenException
+    private <T> CompletableFuture<T> call(Request request, ResponseHandler<T> handler)
+    {
+        try
+        {
+            circuitBreaker.acquire();
+        }
+        catch (CircuitBreaker.OpenException e)
+        {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Call call = client.newCall(request);
+        long startTime = System.nanoTime();
+        call.enqueue(new Callback()
+        {
+            @Override
+            public void onFailure(Call failedCall, IOException e)
+            {
+                // Отмененный проигравший дубль - не ошибка API
+                if (!failedCall.isCanceled())
+                {
+                    circuitBreaker.recordFailure();
+                }
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call completedCall, Response response)
+            {
+                latencies.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+                // Ошибки сервера и превышение лимита считаются отказом API;
+                // ответы вида "Invalid coin" - нормальная работа и предохранитель не открывают
+                if (response.code() >= 500 || response.code() == 429)
+                {
+                    circuitBreaker.recordFailure();
+                }
+                else
+                {
+                    circuitBreaker.recordSuccess();
+                }
+
+                try (Response closeable = response)
+                {
+                    future.complete(handler.handle(closeable));
+                }
+                catch (Exception e)
+                {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        // Отмена future отменяет и HTTP-запрос
+        future.whenComplete((result, error) ->
+        {
+            if (future.isCancelled())
+            {
+                call.cancel();
+            }
+        });
+        return future;
+    }
 
-        public CachedPrice(double price)
+    // Запрос с дублем: если ответа нет дольше обычного (перцентиль задержек), отправляется
+    // второй такой же запрос, и используется первый успешный ответ. Только для идемпотентных GET
+    private <T> CompletableFuture<T> hedgedCall(Request request, ResponseHandler<T> handler)
+    {
+        long hedgeDelay = latencies.size() >= HEDGE_MIN_SAMPLES
+                ? Math.max(HEDGE_MIN_DELAY_MILLIS, latencies.percentile(HEDGE_PERCENTILE))
+                : -1;
+        CompletableFuture<T> primary = call(request, handler);
+        if (!hedgingEnabled || hedgeDelay < 0 || primary.isDone())
         {
-            this.price = price;
-            this.timestamp = System.currentTimeMillis();
+            return primary;
         }
 
-        public boolean isExpired()
+        CompletableFuture<T> result = new CompletableFuture<>();
+        // Число запросов, которые еще могут завершиться успешно
+        AtomicInteger running = new AtomicInteger(1);
+        primary.whenComplete((value, error) ->
+        {
+            if (error == null)
+            {
+                result.complete(value);
+            }
+            else if (running.decrementAndGet() == 0)
+            {
+                result.completeExceptionally(error);
+            }
+        });
+
+        ScheduledFuture<?> timer = hedgeTimer.schedule(() ->
+        {
+            // Дубль нужен, только если первый запрос еще выполняется
+            if (result.isDone() || !running.compareAndSet(1, 2))
+            {
+                return;
+            }
+            hedgedRequests.incrementAndGet();
+            CompletableFuture<T> hedge = call(request, handler);
+            hedge.whenComplete((value, error) ->
+            {
+                if (error == null)
+                {
+                    if (result.complete(value))
+                    {
+                        hedgeWins.incrementAndGet();
+                    }
+                }
+                else if (running.decrementAndGet() == 0)
+                {
+                    result.completeExceptionally(error);
+                }
+            });
+            result.whenComplete((value, error) -> hedge.cancel(false));
+        }, hedgeDelay, TimeUnit.MILLISECONDS);
+
+        // После первого успешного ответа второй запрос не нужен
+        result.whenComplete((value, error) ->
+        {
+            timer.cancel(false);
+            primary.cancel(false);
+        });
+        return result;
+    }
+
+    // Ожидание результата асинхронного запроса в синхронных методах
+    private static <T> T await(CompletableFuture<T> future, String description) throws IOException
+    {
+        try
         {
-            return System.currentTimeMillis() - timestamp > CACHE_TTL;
+            return future.get();
         }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Ожидание " + description + " прервано", e);
+        }
+        catch (ExecutionException e)
+        {
+            // Непроверяемые исключения (например, неверный интервал) пробрасываем как есть
+            if (e.getCause() instanceof RuntimeException && !(e.getCause() instanceof CompletionException))
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            throw asIOException(e.getCause(), description);
+        }
+    }
 
-        public double getPrice()
+    private static IOException asIOException(Throwable error, String description)
+    {
+        while (error instanceof CompletionException && error.getCause() != null)
         {
-            return price;
+            error = error.getCause();
+        }
+        if (error instanceof IOException)
+        {
+            return (IOException) error;
         }
+        return new IOException("Ошибка получения " + description, error);
     }
 
-    private final OkHttpClient client;
+    // Включение режима refresh-ahead: востребованные валюты обновляются в фоне
+    // до истечения кэша, поэтому чтение по ним не ждет сетевого запроса
+    public synchronized void startRefreshAhead()
+    {
+        if (refreshScheduler != null)
+        {
+            return;
+        }
+
+        refreshScheduler = Executors.newSingleThreadScheduledExecutor(runnable ->
+        {
+            Thread thread = new Thread(runnable, "price-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refreshScheduler.scheduleWithFixedDelay(() ->
+        {
+            try
+            {
+                refreshHotSymbols();
+            }
+            catch (Exception e)
+            {
+                logger.error("Ошибка при фоновом обновлении цен", e);
+            }
+        }, 0, REFRESH_INTERVAL, TimeUnit.MILLISECONDS);
+        logger.info("Фоновое обновление цен запущено");
+    }
 
-    public CryptoApiService()
+    public synchronized void stopRefreshAhead()
     {
-        OkHttpClient.Builder builder = new OkHttpClient.Builder();
-        builder.connectTimeout(5, TimeUnit.SECONDS);
-        builder.readTimeout(5, TimeUnit.SECONDS);
-        this.client = builder.build();
+        if (refreshScheduler != null)
+        {
+            refreshScheduler.shutdownNow();
+            refreshScheduler = null;
+        }
+    }
+
+    // Потоковый режим: цены отслеживаемых валют приходят по WebSocket на табло,
+    // и getPrice отвечает с табло без сетевых запросов. REST остается запасным вариантом
+    public synchronized void startStreaming(String apiKey)
+    {
+        if (priceStream != null)
+        {
+            return;
+        }
+        PriceStream stream = new PriceStream(client, STREAM_URL + apiKey, priceBoard, this::publishPrice);
+        stream.watch(hotSymbols.keySet());
+        stream.start();
+        priceStream = stream;
+        logger.info("Потоковое получение цен запущено для {} валют", hotSymbols.size());
+    }
+
+    public synchronized void stopStreaming()
+    {
+        if (priceStream != null)
+        {
+            priceStream.stop();
+            priceStream = null;
+        }
+    }
+
+    // Загрузка справочника символов сразу и затем периодически.
+    // Пока справочник не загружен, isCurrencyValid проверяет валюту запросом к API
+    public synchronized void startSymbolRegistry()
+    {
+        if (registryScheduler != null)
+        {
+            return;
+        }
+
+        registryScheduler = Executors.newSingleThreadScheduledExecutor(runnable ->
+        {
+            Thread thread = new Thread(runnable, "symbol-registry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        registryScheduler.scheduleWithFixedDelay(this::refreshSymbolRegistry, 0, SYMBOL_REGISTRY_REFRESH, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopSymbolRegistry()
+    {
+        if (registryScheduler != null)
+        {
+            registryScheduler.shutdownNow();
+            registryScheduler = null;
+        }
+    }
+
+    private void refreshSymbolRegistry()
+    {
+        Request request = new Request.Builder().url(apiBaseUrl + COIN_LIST_PATH).build();
+        long startTime = System.nanoTime();
+        call(request, response ->
+        {
+            if (!response.isSuccessful())
+            {
+                throw new IOException("Unexpected code " + response);
+            }
+            symbolRegistry.load(response.body().charStream());
+            return symbolRegistry.size();
+        }).whenComplete((size, error) ->
+        {
+            if (error == null)
+            {
+                // После загрузки справочник отвечает сам, отрицательный кэш больше не нужен
+                unknownSymbols.clear();
+                logger.info("Справочник валют загружен: {} символов за {} мс",
+                        size, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+                return;
+            }
+            logger.warn("Не удалось загрузить справочник валют: {}", asIOException(error, "списка монет").getMessage());
+            // Первую загрузку повторяем раньше планового обновления
+            synchronized (this)
+            {
+                if (!symbolRegistry.isLoaded() && registryScheduler != null)
+                {
+                    registryScheduler.schedule(this::refreshSymbolRegistry, SYMBOL_REGISTRY_RETRY, TimeUnit.MILLISECONDS);
+                }
+            }
+        });
+    }
+
+    // Символы справочника, похожие на введенный текст: символ с опечаткой или название валюты
+    public List<String> suggestSymbols(String input, int limit)
+    {
+        return symbolRegistry.search(input, limit);
+    }
+
+    // Полное название валюты из справочника или null
+    public String getSymbolName(String symbol)
+    {
+        return symbolRegistry.getName(symbol);
+    }
+
+    // Цена с табло потока котировок или null, если поток ее не присылал
+    private Double boardPrice(String currencySymbol)
+    {
+        PriceBoard.Tick tick = priceBoard.get(currencySymbol, BOARD_MAX_AGE);
+        if (tick == null)
+        {
+            return null;
+        }
+        boardHits.incrementAndGet();
+        return tick.getPrice();
+    }
+
+    public void addPriceListener(PriceListener listener)
+    {
+        priceListeners.add(listener);
+    }
+
+    // Источник валют, цены которых должны обновляться всегда (например, валюты с алертами)
+    public void addWatchSource(Supplier<Collection<String>> source)
+    {
+        watchSources.add(source);
+        watchSymbols(source.get());
+    }
+
+    private void publishPrice(String symbol, double price)
+    {
+        for (PriceListener listener : priceListeners)
+        {
+            try
+            {
+                listener.onPrice(symbol, price);
+            }
+            catch (RuntimeException e)
+            {
+                logger.error("Ошибка в обработчике цены {}", symbol, e);
+            }
+        }
+    }
+
+    // Регистрация валют, которые нужно держать в кэше (избранное, подписки, популярные)
+    public void watchSymbols(Collection<String> currencySymbols)
+    {
+        currencySymbols.forEach(this::markRequested);
+    }
+
+    private void markRequested(String currencySymbol)
+    {
+        // Новая валюта сразу добавляется в подписку потока котировок
+        PriceStream stream = priceStream;
+        if (hotSymbols.put(currencySymbol, System.currentTimeMillis()) == null && stream != null)
+        {
+            stream.watch(Collections.singletonList(currencySymbol));
+        }
+    }
+
+    private void refreshHotSymbols()
+    {
+        for (Supplier<Collection<String>> source : watchSources)
+        {
+            watchSymbols(source.get());
+        }
+
+        long now = System.currentTimeMillis();
+        List<String> stale = new ArrayList<>();
+
+        for (Map.Entry<String, Long> entry : hotSymbols.entrySet())
+        {
+            String symbol = entry.getKey();
+            // Давно не запрашиваемые валюты больше не обновляем
+            if (now - entry.getValue() > HOT_SYMBOL_IDLE_TIMEOUT)
+            {
+                hotSymbols.remove(symbol, entry.getValue());
+                continue;
+            }
+
+            // Валюты с живой ценой на табло по REST не обновляем
+            if (priceBoard.get(symbol, BOARD_MAX_AGE) != null)
+            {
+                continue;
+            }
+
+            BoundedCache.CacheEntry<Double> cached = priceCache.getEntry(symbol);
+            if (cached == null || cached.getAge() > CACHE_TTL - REFRESH_AHEAD_MARGIN)
+            {
+                stale.add(symbol);
+            }
+        }
+
+        // Подписка потока следует за набором востребованных валют
+        PriceStream stream = priceStream;
+        if (stream != null)
+        {
+            stream.retain(hotSymbols.keySet());
+        }
+
+        // Через loadPrices: пачки запрашиваются параллельно, а валюты, которые в этот момент
+        // загружает запрос пользователя, не запрашиваются второй раз. Ждем завершения всех
+        if (!stale.isEmpty())
+        {
+            loadPrices(stale).exceptionally(e ->
+            {
+                logger.warn("Не удалось обновить цены для {}: {}", stale, asIOException(e, "цен").getMessage());
+                return null;
+            }).join();
+        }
+
+        if (!stale.isEmpty())
+        {
+            logger.debug("Фоновое обновление: обновлено {} из {} востребованных валют", stale.size(), hotSymbols.size());
+        }
+        logger.debug("Статистика кэша цен: {}", priceCache.getStats());
     }
 
     public double getPrice(String currencySymbol) throws IOException
     {
+        return getQuote(currencySymbol).getPrice();
+    }
+
+    public CompletableFuture<Double> getPriceAsync(String currencySymbol)
+    {
+        return getQuoteAsync(currencySymbol).thenApply(PriceQuote::getPrice);
+    }
+
+    public PriceQuote getQuote(String currencySymbol) throws IOException
+    {
+        return await(getQuoteAsync(currencySymbol), "цены " + currencySymbol);
+    }
+
+    // Асинхронное получение цены с признаком свежести. Недавно устаревшая цена отдается
+    // сразу и обновляется в фоне; при ошибке API отдается последняя известная цена.
+    // Валюта становится востребованной, только если цена получена: введенные вручную
+    // несуществующие символы не попадают в фоновое обновление
+    public CompletableFuture<PriceQuote> getQuoteAsync(String currencySymbol)
+    {
+        return loadQuote(currencySymbol).thenApply(quote ->
+        {
+            markRequested(currencySymbol);
+            return quote;
+        });
+    }
+
+    private CompletableFuture<PriceQuote> loadQuote(String currencySymbol)
+    {
+        // Цена из потока котировок не требует ни кэша, ни запроса
+        Double live = boardPrice(currencySymbol);
+        if (live != null)
+        {
+            return CompletableFuture.completedFuture(PriceQuote.fresh(live));
+        }
+
         // Проверяем кэш
-        CachedPrice cached = priceCache.get(currencySymbol);
-        if (cached != null && !cached.isExpired())
+        Double cached = priceCache.get(currencySymbol);
+        if (cached != null)
         {
             logger.debug("Используется кэшированная цена для {}", currencySymbol);
-            return cached.getPrice();
+            return CompletableFuture.completedFuture(PriceQuote.fresh(cached));
+        }
+
+        BoundedCache.CacheEntry<Double> stale = priceCache.getEntry(currencySymbol);
+        if (stale != null && stale.getAge() <= CACHE_TTL + STALE_WHILE_REVALIDATE)
+        {
+            loadPrice(currencySymbol).exceptionally(e ->
+            {
+                logger.warn("Не удалось обновить цену {} в фоне: {}", currencySymbol, asIOException(e, "цены").getMessage());
+                return null;
+            });
+            staleServed.incrementAndGet();
+            return CompletableFuture.completedFuture(PriceQuote.stale(stale.getValue(), stale.getAge()));
+        }
+
+        return loadPrice(currencySymbol).handle((price, error) ->
+        {
+            if (error == null)
+            {
+                return PriceQuote.fresh(price);
+            }
+            PriceQuote fallback = staleFallback(currencySymbol);
+            if (fallback == null)
+            {
+                throw new CompletionException(asIOException(error, "цены " + currencySymbol));
+            }
+            logger.warn("API недоступен, для {} используется цена {} мс назад: {}",
+                    currencySymbol, fallback.getAgeMillis(), asIOException(error, "цены").getMessage());
+            return fallback;
+        });
+    }
+
+    // Последняя известная цена для ответа вместо ошибки; null, если ее нет или она слишком старая
+    private PriceQuote staleFallback(String currencySymbol)
+    {
+        BoundedCache.CacheEntry<Double> entry = priceCache.getEntry(currencySymbol);
+        if (entry == null || entry.getAge() > STALE_IF_ERROR)
+        {
+            return null;
+        }
+        staleServed.incrementAndGet();
+        return PriceQuote.stale(entry.getValue(), entry.getAge());
+    }
+
+    // Загрузка цены из API. Одновременные запросы по одной валюте
+    // получают один и тот же future и ждут один HTTP-запрос
+    private CompletableFuture<Double> loadPrice(String currencySymbol)
+    {
+        // Если запрос по этой валюте уже выполняется, ждем его результат
+        CompletableFuture<Double> future = new CompletableFuture<>();
+        CompletableFuture<Double> existing = inFlight.putIfAbsent(currencySymbol, future);
+        if (existing != null)
+        {
+            coalescedCalls.incrementAndGet();
+            logger.debug("Запрос цены {} объединен с уже выполняющимся", currencySymbol);
+            return existing;
         }
 
+        // Пока мы занимали слот, предыдущий запрос мог успеть обновить кэш
+        BoundedCache.CacheEntry<Double> entry = priceCache.getEntry(currencySymbol);
+        CompletableFuture<Double> source = entry != null && !entry.isExpired()
+                ? CompletableFuture.completedFuture(entry.getValue())
+                : fetchPriceAsync(currencySymbol);
+        source.whenComplete((price, error) ->
+        {
+            inFlight.remove(currencySymbol, future);
+            if (error != null)
+            {
+                future.completeExceptionally(asIOException(error, "цены " + currencySymbol));
+            }
+            else
+            {
+                future.complete(price);
+            }
+        });
+        return future;
+    }
+
+    private CompletableFuture<Double> fetchPriceAsync(String currencySymbol)
+    {
         // Если кэш устарел или отсутствует, делаем запрос к API
-        String url = "https://min-api.cryptocompare.com/data/price?fsym=" + currencySymbol + "&tsyms=USD";
+        String url = apiBaseUrl + "/data/price?fsym=" + currencySymbol + "&tsyms=USD";
         Request request = new Request.Builder().url(url).build();
+        long startTime = System.nanoTime();
 
-        try (Response response = client.newCall(request).execute())
+        // Обработчик только разбирает ответ: при дублировании он выполняется для обоих запросов,
+        // а кэш и получатели цен обновляются один раз по итоговому результату
+        return hedgedCall(request, response ->
         {
             if (response.isSuccessful())
             {
                 String responseBody = response.body().string();
                 JSONObject json = new JSONObject(responseBody);
-                double price = json.getDouble("USD");
-
-                // Сохраняем в кэш
-                priceCache.put(currencySymbol, new CachedPrice(price));
-                logger.debug("Получена цена для {} из API: ${}", currencySymbol, price);
-                return price;
+                return json.getDouble("USD");
             }
             else
             {
                 throw new IOException("API error: " + response.code() + " - " + response.message());
             }
+        }).thenApply(price ->
+        {
+            // Сохраняем в кэш
+            priceCache.put(currencySymbol, price);
+            priceCache.recordLoad(System.nanoTime() - startTime);
+            publishPrice(currencySymbol, price);
+            logger.debug("Получена цена для {} из API: ${}", currencySymbol, price);
+            return price;
+        });
+    }
+
+    // Получение цен сразу для нескольких валют: недостающие в кэше валюты
+    // запрашиваются пачками через pricemulti, а не отдельным запросом на каждую.
+    // Валюты, для которых цену получить не удалось, в результат не попадают.
+    public Map<String, Double> getPrices(Collection<String> currencySymbols) throws IOException
+    {
+        return await(getPricesAsync(currencySymbols), "цен " + currencySymbols);
+    }
+
+    public CompletableFuture<Map<String, Double>> getPricesAsync(Collection<String> currencySymbols)
+    {
+        return getQuotesAsync(currencySymbols).thenApply(quotes ->
+        {
+            Map<String, Double> prices = new LinkedHashMap<>();
+            quotes.forEach((symbol, quote) -> prices.put(symbol, quote.getPrice()));
+            return prices;
+        });
+    }
+
+    // Цены с признаком свежести в том же порядке, в котором были переданы валюты.
+    // Future завершается ошибкой, только если не удалось получить ни одной цены
+    public CompletableFuture<Map<String, PriceQuote>> getQuotesAsync(Collection<String> currencySymbols)
+    {
+        return getQuotesAsync(currencySymbols, true);
+    }
+
+    // То же без регистрации валют как востребованных: разовые запросы (inline-режим)
+    // не должны запускать фоновое обновление цен и подписку потока котировок
+    public CompletableFuture<Map<String, PriceQuote>> lookupQuotesAsync(Collection<String> currencySymbols)
+    {
+        return getQuotesAsync(currencySymbols, false);
+    }
+
+    private CompletableFuture<Map<String, PriceQuote>> getQuotesAsync(Collection<String> currencySymbols, boolean watch)
+    {
+        List<String> symbols = new ArrayList<>(new LinkedHashSet<>(currencySymbols));
+        Map<String, PriceQuote> quotes = new HashMap<>();
+        List<String> revalidate = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+
+        for (String symbol : symbols)
+        {
+            Double cached = boardPrice(symbol);
+            if (cached == null)
+            {
+                cached = priceCache.get(symbol);
+            }
+            if (cached != null)
+            {
+                quotes.put(symbol, PriceQuote.fresh(cached));
+                continue;
+            }
+
+            BoundedCache.CacheEntry<Double> stale = priceCache.getEntry(symbol);
+            if (stale != null && stale.getAge() <= CACHE_TTL + STALE_WHILE_REVALIDATE)
+            {
+                staleServed.incrementAndGet();
+                quotes.put(symbol, PriceQuote.stale(stale.getValue(), stale.getAge()));
+                revalidate.add(symbol);
+            }
+            else
+            {
+                missing.add(symbol);
+            }
+        }
+
+        // Недавно устаревшие цены отдаем сразу, а обновляем в фоне
+        if (!revalidate.isEmpty())
+        {
+            loadPrices(revalidate).exceptionally(e ->
+            {
+                logger.warn("Не удалось обновить цены {} в фоне: {}", revalidate, asIOException(e, "цен").getMessage());
+                return null;
+            });
         }
+
+        CompletableFuture<Map<String, Double>> loaded = missing.isEmpty()
+                ? CompletableFuture.completedFuture(Collections.emptyMap())
+                : loadPrices(missing);
+
+        return loaded.handle((prices, error) ->
+        {
+            Map<String, PriceQuote> ordered = new LinkedHashMap<>();
+            for (String symbol : symbols)
+            {
+                PriceQuote quote = quotes.get(symbol);
+                if (quote == null && prices != null && prices.containsKey(symbol))
+                {
+                    quote = PriceQuote.fresh(prices.get(symbol));
+                }
+                if (quote == null)
+                {
+                    // API не вернул цену - отдаем последнюю известную, если она есть
+                    quote = staleFallback(symbol);
+                }
+                if (quote != null)
+                {
+                    ordered.put(symbol, quote);
+                }
+            }
+
+            // Если не удалось получить ни одной цены, сообщаем об ошибке вызывающему коду
+            if (ordered.isEmpty() && error != null)
+            {
+                throw new CompletionException(asIOException(error, "цен " + symbols));
+            }
+            // Востребованными становятся только валюты, для которых нашлась цена
+            if (watch)
+            {
+                ordered.keySet().forEach(this::markRequested);
+            }
+            return ordered;
+        });
     }
 
-    // Новый метод для проверки существования валюты
-    public boolean isCurrencyValid(String symbol) throws IOException
+    // Загрузка цен из API пачками, параллельно. Валюты, которые уже загружаются
+    // другими вызовами, не запрашиваются повторно: ждем их результат.
+    // Future завершается ошибкой, только если не удалось получить ни одной цены
+    private CompletableFuture<Map<String, Double>> loadPrices(List<String> symbols)
     {
-        String url = "https://min-api.cryptocompare.com/data/price?fsym=" + symbol + "&tsyms=USD";
-        Request request = new Request.Builder().url(url).build();
+        Map<String, Double> prices = new ConcurrentHashMap<>();
+        // Валюты, которые загружаем сами, и запросы других вызовов, которые ждем
+        Map<String, CompletableFuture<Double>> owned = new LinkedHashMap<>();
+        Map<String, CompletableFuture<Double>> joined = new HashMap<>();
 
-        try (Response response = client.newCall(request).execute())
+        for (String symbol : symbols)
         {
-            if (response.isSuccessful())
+            CompletableFuture<Double> future = new CompletableFuture<>();
+            CompletableFuture<Double> existing = inFlight.putIfAbsent(symbol, future);
+            if (existing != null)
             {
-                String responseBody = response.body().string();
-                JSONObject json = new JSONObject(responseBody);
-                return json.has("USD");
+                coalescedCalls.incrementAndGet();
+                joined.put(symbol, existing);
             }
             else
             {
-                // Проверяем специфические ошибки API
-                String responseBody = response.body().string();
-                JSONObject json = new JSONObject(responseBody);
-                if (json.has("Response") && "Error".equals(json.getString("Response")) && "Invalid coin".equals(json.getString("Message")))
+                owned.put(symbol, future);
+            }
+        }
+
+        List<CompletableFuture<?>> pending = new ArrayList<>();
+        AtomicReference<Throwable> lastError = new AtomicReference<>();
+
+        for (List<String> batch : splitIntoBatches(new ArrayList<>(owned.keySet())))
+        {
+            pending.add(fetchPriceBatchAsync(batch).handle((fetched, error) ->
+            {
+                if (error != null)
+                {
+                    IOException e = asIOException(error, "цен " + batch);
+                    logger.warn("Не удалось получить цены для {}: {}", batch, e.getMessage());
+                    lastError.set(e);
+                }
+                else
+                {
+                    prices.putAll(fetched);
+                }
+                for (String symbol : batch)
+                {
+                    CompletableFuture<Double> future = owned.get(symbol);
+                    inFlight.remove(symbol, future);
+                    Double price = fetched != null ? fetched.get(symbol) : null;
+                    if (price != null)
+                    {
+                        future.complete(price);
+                    }
+                    else
+                    {
+                        future.completeExceptionally(error != null
+                                ? asIOException(error, "цены " + symbol)
+                                : new IOException("API не вернул цену для " + symbol));
+                    }
+                }
+                return null;
+            }));
+        }
+
+        for (Map.Entry<String, CompletableFuture<Double>> entry : joined.entrySet())
+        {
+            pending.add(entry.getValue().handle((price, error) ->
+            {
+                if (error != null)
+                {
+                    lastError.set(error);
+                }
+                else
+                {
+                    prices.put(entry.getKey(), price);
+                }
+                return null;
+            }));
+        }
+
+        return CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).thenApply(ignored ->
+        {
+            if (prices.isEmpty() && lastError.get() != null)
+            {
+                throw new CompletionException(asIOException(lastError.get(), "цен " + symbols));
+            }
+            return prices;
+        });
+    }
+
+    // Количество запросов цены, которые дождались уже выполняющегося запроса вместо своего
+    public long getCoalescedCallCount()
+    {
+        return coalescedCalls.get();
+    }
+
+    // Разбиение списка валют на пачки, укладывающиеся в ограничение длины fsyms
+    private List<List<String>> splitIntoBatches(List<String> symbols)
+    {
+        List<List<String>> batches = new ArrayList<>();
+        List<String> batch = new ArrayList<>();
+        int length = 0;
+
+        for (String symbol : symbols)
+        {
+            int added = batch.isEmpty() ? symbol.length() : symbol.length() + 1;
+            if (!batch.isEmpty() && length + added > MAX_FSYMS_LENGTH)
+            {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                added = symbol.length();
+                length = 0;
+            }
+            batch.add(symbol);
+            length += added;
+        }
+
+        if (!batch.isEmpty())
+        {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    private CompletableFuture<Map<String, Double>> fetchPriceBatchAsync(List<String> symbols)
+    {
+        String url = apiBaseUrl + "/data/pricemulti?fsyms=" + String.join(",", symbols) + "&tsyms=USD";
+        Request request = new Request.Builder().url(url).build();
+        long startTime = System.nanoTime();
+
+        return hedgedCall(request, response ->
+        {
+            if (!response.isSuccessful())
+            {
+                throw new IOException("API error: " + response.code() + " - " + response.message());
+            }
+
+            String responseBody = response.body().string();
+            JSONObject json = new JSONObject(responseBody);
+
+            if (json.has("Response") && "Error".equals(json.optString("Response")))
+            {
+                throw new IOException("API error: " + json.optString("Message"));
+            }
+
+            Map<String, Double> prices = new HashMap<>();
+            for (String symbol : symbols)
+            {
+                JSONObject quote = json.optJSONObject(symbol);
+                if (quote != null && quote.has("USD"))
                 {
-                    return false;
+                    prices.put(symbol, quote.getDouble("USD"));
                 }
-                // Для других ошибок API
-                throw new IOException("API error: " + responseBody);
             }
+            return prices;
+        }).thenApply(prices ->
+        {
+            // Как и в fetchPriceAsync, побочные эффекты - один раз на итоговый ответ
+            prices.forEach((symbol, price) ->
+            {
+                priceCache.put(symbol, price);
+                publishPrice(symbol, price);
+            });
+            priceCache.recordLoad(System.nanoTime() - startTime);
+            logger.debug("Получены цены для {} из {} валют одним запросом", prices.size(), symbols.size());
+            return prices;
+        });
+    }
+
+    // Проверка существования валюты. Обычно отвечает справочник символов без сетевого запроса;
+    // пока он не загружен - запрос цены к API с кэшированием ответа
+    public boolean isCurrencyValid(String symbol) throws IOException
+    {
+        // Валюта из справочника или с известной ценой заведомо существует
+        if (symbolRegistry.contains(symbol) || priceCache.getEntry(symbol) != null)
+        {
+            return true;
         }
+        if (symbolRegistry.isLoaded() || unknownSymbols.get(symbol) != null)
+        {
+            return false;
+        }
+
+        String url = apiBaseUrl + "/data/price?fsym=" + symbol + "&tsyms=USD";
+        Request request = new Request.Builder().url(url).build();
+
+        // Через call, чтобы при недоступном API проверка не ждала таймаут
+        return await(call(request, response ->
+        {
+            String responseBody = response.body().string();
+            JSONObject json = new JSONObject(responseBody);
+            if (response.isSuccessful() && json.has("USD"))
+            {
+                // Полученная цена пригодится следующему запросу курса
+                priceCache.put(symbol, json.getDouble("USD"));
+                return true;
+            }
+            // Проверяем специфические ошибки API
+            String message = json.optString("Message");
+            boolean apiError = "Error".equals(json.optString("Response"));
+            // Превышение лимита ничего не говорит о валюте - такой ответ не кэшируем
+            if (apiError && message.toLowerCase().contains("rate limit"))
+            {
+                throw new IOException("API error: " + message);
+            }
+            if (response.isSuccessful() || (apiError && "Invalid coin".equals(message)))
+            {
+                unknownSymbols.put(symbol, Boolean.TRUE);
+                return false;
+            }
+            // Для других ошибок API
+            throw new IOException("API error: " + responseBody);
+        }), "проверки валюты " + symbol);
     }
 
 
@@ -130,13 +1081,135 @@ public class CryptoApiService
         logger.info("Кэш цен успешно очищен");
     }
 
-    // Метод для получения количества валют в кэше
-    public int getCacheSize()
+    // Статистика кэша цен: размер, попадания, промахи, вытеснения и время загрузки
+    public BoundedCache.CacheStats getCacheStats()
+    {
+        return priceCache.getStats();
+    }
+
+    // Состояние потока котировок для логов
+    public String getStreamStats()
     {
-        return priceCache.size();
+        PriceStream stream = priceStream;
+        return stream == null ? "поток выключен"
+                : stream.getStats() + ", ответов с табло " + boardHits.get();
+    }
+
+    // Состояние защиты от сбоев API для логов
+    public String getResilienceStats()
+    {
+        return String.format("предохранитель %s (отклонено %d), p95 %d мс, дублей %d (выиграли %d), устаревших цен %d, " +
+                        "объединенных запросов %d",
+                circuitBreaker.getState(), circuitBreaker.getRejectedCount(), latencies.percentile(HEDGE_PERCENTILE),
+                hedgedRequests.get(), hedgeWins.get(), staleServed.get(), getCoalescedCallCount());
     }
     // В CryptoApiService
-    public List<HistoricalData> getHistoricalData(String symbol, String timeframe, int limit) throws IOException {
+    public HistoricalSeries getHistoricalData(String symbol, String timeframe, int limit) throws IOException {
+        return await(getHistoricalDataAsync(symbol, timeframe, limit), "истории " + symbol);
+    }
+
+    public CompletableFuture<HistoricalSeries> getHistoricalDataAsync(String symbol, String timeframe, int limit) {
+        long bucketMillis;
+        try {
+            bucketMillis = getBucketMillis(timeframe);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        String cacheKey = symbol + ":" + timeframe.toLowerCase();
+
+        // Запрос с меньшим limit обслуживаем из закэшированного ряда большей длины
+        CachedHistory cached = historyCache.get(cacheKey);
+        if (cached != null && cached.limit >= limit) {
+            logger.debug("Используются кэшированные исторические данные для {} ({}, limit={})", symbol, timeframe, limit);
+            return CompletableFuture.completedFuture(cached.tail(limit));
+        }
+
+        long startTime = System.nanoTime();
+        return loadHistoricalData(symbol, timeframe.toLowerCase(), limit, bucketMillis).thenApply(history -> {
+            historyCache.recordLoad(System.nanoTime() - startTime);
+
+            // Данные живут до конца текущей свечи: после этого появляется новая
+            long ttl = bucketMillis - System.currentTimeMillis() % bucketMillis;
+            historyCache.put(cacheKey, new CachedHistory(limit, history), ttl);
+            return history;
+        });
+    }
+
+    // Загрузка ряда через локальное хранилище: с API запрашиваются только свечи
+    // новее последней сохраненной, остальное читается из таблицы candles
+    private CompletableFuture<HistoricalSeries> loadHistoricalData(String symbol, String timeframe, int limit, long bucketMillis) {
+        long bucketSeconds = TimeUnit.MILLISECONDS.toSeconds(bucketMillis);
+        long nowSeconds = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        long currentBucket = nowSeconds - nowSeconds % bucketSeconds;
+        long windowStart = currentBucket - limit * bucketSeconds;
+
+        int fetchLimit = limit;
+        try {
+            CandleStore.StoredRange range = candleStore.getStoredRange(symbol, timeframe);
+            if (range != null && range.getFirstTime() <= windowStart && range.getLastTime() >= windowStart) {
+                // Последняя сохраненная свеча могла быть незакрытой, поэтому запрашиваем и ее
+                fetchLimit = (int) Math.max(1, (currentBucket - range.getLastTime()) / bucketSeconds);
+            }
+        } catch (SQLException e) {
+            logger.error("Ошибка локального хранилища свечей для {}, загружаем ряд целиком", symbol, e);
+            return fetchHistoricalData(symbol, timeframe, limit);
+        }
+
+        int requested = fetchLimit;
+        // Запись и чтение SQLite выполняются в потоке, завершившем HTTP-запрос: это быстрые локальные операции
+        return fetchHistoricalData(symbol, timeframe, requested).thenCompose(fresh -> {
+            try {
+                if (requested == limit) {
+                    // Окно загружено целиком: старые свечи до возможной дыры удаляются,
+                    // чтобы MIN/MAX хранилища описывали непрерывный ряд
+                    candleStore.saveWindow(symbol, timeframe, fresh);
+                } else {
+                    candleStore.save(symbol, timeframe, fresh);
+                }
+                logger.debug("Догружено {} свечей {} ({}) вместо {}", fresh.size(), symbol, timeframe, limit + 1);
+                return CompletableFuture.completedFuture(candleStore.load(symbol, timeframe, windowStart));
+            } catch (SQLException e) {
+                logger.error("Ошибка локального хранилища свечей для {}, загружаем ряд целиком", symbol, e);
+                // Если ряд и так загружен целиком, повторный запрос не нужен
+                return requested == limit
+                        ? CompletableFuture.completedFuture(fresh)
+                        : fetchHistoricalData(symbol, timeframe, limit);
+            }
+        });
+    }
+
+    // Длительность одной свечи для временного интервала
+    private static long getBucketMillis(String timeframe) {
+        switch (timeframe.toLowerCase()) {
+            case "day":
+                return TimeUnit.DAYS.toMillis(1);
+            case "hour":
+                return TimeUnit.HOURS.toMillis(1);
+            case "minute":
+                return TimeUnit.MINUTES.toMillis(1);
+            default:
+                throw new IllegalArgumentException("Неподдерживаемый временной интервал: " + timeframe);
+        }
+    }
+
+    // Закэшированный исторический ряд и limit, с которым он был запрошен
+    private static class CachedHistory {
+        private final int limit;
+        private final HistoricalSeries data;
+
+        CachedHistory(int limit, HistoricalSeries data) {
+            this.limit = limit;
+            this.data = data;
+        }
+
+        // API возвращает limit + 1 точку, поэтому и из кэша отдаем столько же последних точек.
+        // Ряд неизменяемый, поэтому срез не копирует данные
+        HistoricalSeries tail(int requestedLimit) {
+            return data.tail(requestedLimit + 1);
+        }
+    }
+
+    private CompletableFuture<HistoricalSeries> fetchHistoricalData(String symbol, String timeframe, int limit) {
         // Исправляем имя параметра: "day" -> "histoday", "hour" -> "histohour"
         String apiEndpoint;
         switch (timeframe.toLowerCase()) {
@@ -150,64 +1223,24 @@ public class CryptoApiService
                 apiEndpoint = "histominute";
                 break;
             default:
-                throw new IllegalArgumentException("Неподдерживаемый временной интервал: " + timeframe);
+                return CompletableFuture.failedFuture(
+                        new IllegalArgumentException("Неподдерживаемый временной интервал: " + timeframe));
         }
 
-        String url = "https://min-api.cryptocompare.com/data/v2/" + apiEndpoint +
+        String url = apiBaseUrl + "/data/v2/" + apiEndpoint +
                 "?fsym=" + symbol +
                 "&tsym=USD&limit=" + limit;
 
         Request request = new Request.Builder().url(url).build();
 
-        try (Response response = client.newCall(request).execute()) {
+        return call(request, response -> {
             if (!response.isSuccessful()) {
                 throw new IOException("API request failed with code: " + response.code());
             }
 
-            String responseBody = response.body().string();
-            JSONObject json = new JSONObject(responseBody);
-
-            // Проверка на наличие ошибки в ответе
-            if (json.has("Response") && "Error".equals(json.getString("Response"))) {
-                throw new IOException("API error: " + json.getString("Message"));
-            }
-
-            // Проверяем, что ответ содержит данные
-            if (json.has("Data") && json.getJSONObject("Data").has("Data")) {
-                List<HistoricalData> history = new ArrayList<>();
-                JSONArray data = json.getJSONObject("Data").getJSONArray("Data");
-
-                for (int i = 0; i < data.length(); i++) {
-                    JSONObject item = data.getJSONObject(i);
-                    history.add(new HistoricalData(
-                            item.getLong("time"),
-                            item.getDouble("close")
-                    ));
-                }
-                return history;
-            }
-
-            throw new IOException("Unexpected API response structure: " + responseBody);
-        }
-    }
-
-    // Новый класс для исторических данных
-    public static class HistoricalData {
-        private final long timestamp;
-        private final double price;
-
-        public HistoricalData(long timestamp, double price) {
-            this.timestamp = timestamp;
-            this.price = price;
-        }
-
-        public long getTimestamp() {
-            return timestamp;
-        }
-
-        public double getPrice() {
-            return price;
-        }
+            // Разбираем ответ потоково, прямо из тела ответа в массивы ряда
+            return HistoResponseParser.parse(
+                    new InputStreamReader(response.body().byteStream(), StandardCharsets.UTF_8), limit + 1);
+        });
     }
 }
-
@@ -1,6 +1,5 @@
 package org.example.cryptobot;
 
-import com.google.gson.Gson;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
 import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
@@ -8,6 +7,8 @@ import org.telegram.telegrambots.meta.api.methods.send.SendPhoto;
 import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
 import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
 import org.telegram.telegrambots.meta.api.objects.InputFile;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.PhotoSize;
 import org.telegram.telegrambots.meta.api.objects.Update;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
@@ -15,17 +16,15 @@ import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
-import java.sql.*;
-import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.Date;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class CryptoBot extends TelegramLongPollingBot
 {
@@ -43,6 +42,28 @@ public class CryptoBot extends TelegramLongPollingBot
     private static final String REMOVE_NOTIFICATION_PREFIX = "remove_notification:";
     private static final String REMOVE_NOTIFICATION_BUTTON = "❌ Удалить уведомление";
 
+    // Похожие валюты в ответе на неизвестную: "suggest:ADD:BTC", "suggest:PRICE:ETH"
+    private static final String SUGGESTION_PREFIX = "suggest:";
+    private static final int MAX_SYMBOL_SUGGESTIONS = 5;
+    // Ограничение Telegram на callback data
+    private static final int MAX_CALLBACK_DATA_LENGTH = 64;
+
+    // Ценовые алерты
+    private static final String ALERTS_COMMAND = "alerts";
+    private static final String REMOVE_ALERT_PREFIX = "remove_alert:";
+    private static final int MAX_ALERTS_PER_USER = 20;
+    // "/alert BTC > 70000", "/alert BTC < 60000"
+    private static final Pattern THRESHOLD_ALERT_PATTERN =
+            Pattern.compile("^/alert\\s+([A-Za-z0-9]+)\\s*([<>])\\s*(\\d+(?:[.,]\\d+)?)$");
+    // "/alert ETH 5% 1h": изменение на 5% за час; окно в минутах (m), часах (h) или днях (d)
+    private static final Pattern CHANGE_ALERT_PATTERN =
+            Pattern.compile("^/alert\\s+([A-Za-z0-9]+)\\s+(\\d+(?:[.,]\\d+)?)\\s*%\\s*(\\d{1,4})\\s*([mhdмчд])$");
+    private static final String ALERT_USAGE = "Ценовые алерты срабатывают один раз:\n" +
+            "/alert BTC > 70000 - цена поднимется до 70000$\n" +
+            "/alert BTC < 60000 - цена опустится до 60000$\n" +
+            "/alert ETH 5% 1h - цена изменится на 5% за час (окно: 30m, 4h, 1d)\n" +
+            "/alerts - список алертов";
+
     // Настройки уведомлений (в минутах)
     private static final Map<String, Integer> NOTIFICATION_INTERVALS = new HashMap<>();
 
@@ -56,11 +77,10 @@ public class CryptoBot extends TelegramLongPollingBot
     }
 
     private static final String CUSTOM_INTERVAL_COMMAND = "custom_interval";
-    private static final String WAITING_FOR_CUSTOM_INTERVAL = "waiting_for_custom_interval";
     private static final int MIN_NOTIFICATION_INTERVAL = 5; // Минимальный интервал в минутах
-
-    // Карта для хранения текущих настроек уведомлений
-    private final Map<Long, String> notificationSettings = new HashMap<>();
+    private static final long PRICE_TIMEOUT_SECONDS = 15; // Ожидание пакетного запроса цен
+    private static final long STATS_LOG_PERIOD_MINUTES = 5; // Период записи статистики подсистем в лог
+    private static final long NOTIFICATION_RETRY_SECONDS = 60; // Повтор уведомления, не поместившегося в очередь рассылки
 
 
     // В начало класса
@@ -79,42 +99,112 @@ public class CryptoBot extends TelegramLongPollingBot
             "AVAX", "BNB", "LINK", "UNI", "XMR"
     );
 
-    // Карта для хранения состояний пользователей
-    private final Map<Long, String> userStates = new HashMap<>();
+    // Состояние диалогов: шаг, выбранные валюты, настраиваемое уведомление
+    private final SessionStore sessions = new SessionStore();
     private final DatabaseHelper dbHelper = new DatabaseHelper();
-    private final CryptoApiService apiService = new CryptoApiService();
-    // Карта для хранения выбранных валют во время мультивыбора
-    private final Map<Long, Set<String>> selectedCurrencies = new HashMap<>();
-    // Карта для хранения выбранных валют во время мультивыбора для удаления
-    private final Map<Long, Set<String>> removalSelectedCurrencies = new HashMap<>();
-    // Карта для хранения выбранных валют во время мультивыбора для проверки курса
-    private final Map<Long, Set<String>> priceSelectedCurrencies = new HashMap<>();
+    private final CryptoApiService apiService =
+            new CryptoApiService(new CandleStore(dbHelper.getConnectionManager()));
+    private final ChartRenderer chartRenderer = new ChartRenderer();
+    // Планировщик отправляет каждое уведомление точно в срок, без периодического опроса таблицы
+    private final NotificationScheduler notificationScheduler = new NotificationScheduler(this::processDueNotifications);
+    // Рассылка уведомлений через очередь с ограничением частоты Telegram
+    private final MessageDispatcher messageDispatcher = new MessageDispatcher(this::execute);
+    // Ценовые алерты проверяются на каждом обновлении цены
+    private final AlertEngine alertEngine = new AlertEngine(this::onAlertTriggered);
+    // Обновления обрабатываются параллельно по чатам, с сохранением порядка внутри чата
+    private final UpdateDispatcher updateDispatcher = new UpdateDispatcher(this::handleUpdate);
+    // Inline-запросы "@bot btc eth" отвечаются из кэша цен, мимо очереди чатов
+    private final InlineQueryHandler inlineQueryHandler =
+            new InlineQueryHandler(apiService, dbHelper, this::execute, POPULAR_CURRENCIES);
+    // file_id уже загруженных графиков: ключ "валюта:интервал:время последней свечи"
+    private final BoundedCache<String, String> chartFileIds =
+            new BoundedCache<>(1000, TimeUnit.DAYS.toMillis(1), BoundedCache.EvictionPolicy.LRU);
+    // Сервер webhook, если обновления приходят через него, а не через long polling
+    private volatile WebhookServer webhookServer;
+    // Статистика подсистем пишется в лог по расписанию, независимо от уведомлений
+    private final ScheduledExecutorService statsScheduler = Executors.newSingleThreadScheduledExecutor(runnable ->
+    {
+        Thread thread = new Thread(runnable, "bot-stats");
+        thread.setDaemon(true);
+        return thread;
+    });
     public static final Logger logger = LoggerFactory.getLogger(CryptoBot.class);
 
     public CryptoBot()
     {
         dbHelper.initDatabase();
         startNotificationScheduler();
+        sessions.start();
+
+        // Держим в кэше популярные валюты, избранное и подписки на уведомления
+        apiService.watchSymbols(POPULAR_CURRENCIES);
+        apiService.watchSymbols(dbHelper.getWatchedCurrencies());
+        // Алерты получают каждую новую цену, а их валюты обновляются постоянно
+        alertEngine.load(dbHelper.getAllPriceAlerts());
+        apiService.addPriceListener(alertEngine::onPrice);
+        apiService.addWatchSource(alertEngine::getSymbols);
+        apiService.startRefreshAhead();
+        // Справочник символов для проверки введенных вручную валют без запросов к API
+        apiService.startSymbolRegistry();
+        // API_HEDGING=true включает дублирующие запросы цен при медленных ответах API
+        apiService.setHedgingEnabled(Boolean.parseBoolean(System.getenv("API_HEDGING")));
+        // С ключом CryptoCompare цены отслеживаемых валют приходят потоком по WebSocket
+        String streamApiKey = System.getenv("CRYPTOCOMPARE_API_KEY");
+        if (streamApiKey != null && !streamApiKey.isEmpty())
+        {
+            apiService.startStreaming(streamApiKey);
+        }
+        statsScheduler.scheduleAtFixedRate(this::logStats, STATS_LOG_PERIOD_MINUTES, STATS_LOG_PERIOD_MINUTES, TimeUnit.MINUTES);
+    }
+
+    // Вызывается Main при запуске в режиме webhook, чтобы статистика сервера попадала в общий лог
+    public void setWebhookServer(WebhookServer webhookServer)
+    {
+        this.webhookServer = webhookServer;
     }
 
     private void startNotificationScheduler()
     {
-        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-        scheduler.scheduleAtFixedRate(() ->
-        {
-            try
-            {
-                checkNotifications();
-            }
-            catch (Exception e)
-            {
-                logger.error("Ошибка при проверке уведомлений", e);
-            }
-        }, 5, 5, TimeUnit.MINUTES);
+        notificationScheduler.load(dbHelper.getAllNotifications());
+        notificationScheduler.start();
+    }
+
+    // Подписка на уведомления: сохраняем в базе и сразу ставим в планировщик
+    private void subscribeNotification(long chatId, String currency, int minutes)
+    {
+        dbHelper.addNotificationSetting(chatId, currency, minutes);
+        notificationScheduler.schedule(chatId, currency, minutes, System.currentTimeMillis() / 1000);
+    }
+
+    private void unsubscribeNotification(long chatId, String currency)
+    {
+        dbHelper.removeNotificationSetting(chatId, currency);
+        notificationScheduler.cancel(chatId, currency);
     }
 
     @Override
     public void onUpdateReceived(Update update)
+    {
+        if (update.hasInlineQuery())
+        {
+            inlineQueryHandler.submit(update.getInlineQuery());
+            return;
+        }
+        updateDispatcher.submit(update);
+    }
+
+    // Прием обновления из webhook без ожидания; false, если очередь чата заполнена
+    public boolean offerUpdate(Update update)
+    {
+        if (update.hasInlineQuery())
+        {
+            inlineQueryHandler.submit(update.getInlineQuery());
+            return true;
+        }
+        return updateDispatcher.trySubmit(update);
+    }
+
+    private void handleUpdate(Update update)
     {
         if (update.hasCallbackQuery())
         {
@@ -152,12 +242,17 @@ public class CryptoBot extends TelegramLongPollingBot
         notificationsButton.setText("🔔 Уведомления");
         notificationsButton.setCallbackData(NOTIFICATION_COMMAND);
 
+        InlineKeyboardButton alertsButton = new InlineKeyboardButton();
+        alertsButton.setText("🚨 Ценовые алерты");
+        alertsButton.setCallbackData(ALERTS_COMMAND);
+
         // Добавляем каждую кнопку в отдельную строку (вертикальный столбик)
         rows.add(Collections.singletonList(addButton));
         rows.add(Collections.singletonList(removeButton));
         rows.add(Collections.singletonList(listButton));
         rows.add(Collections.singletonList(priceButton));
         rows.add(Collections.singletonList(notificationsButton));
+        rows.add(Collections.singletonList(alertsButton));
 
         markup.setKeyboard(rows);
 
@@ -175,7 +270,7 @@ public class CryptoBot extends TelegramLongPollingBot
         }
     }
 
-    private void handleMultiSelect(Update update, String prefix, Map<Long, Set<String>> storage, String messageText, Function<Long, InlineKeyboardMarkup> keyboardGenerator)
+    private void handleMultiSelect(Update update, String prefix, SessionStore.Selection selection, String messageText, Function<Long, InlineKeyboardMarkup> keyboardGenerator)
     {
         CallbackQuery callbackQuery = update.getCallbackQuery();
         long chatId = callbackQuery.getMessage().getChatId();
@@ -183,21 +278,7 @@ public class CryptoBot extends TelegramLongPollingBot
         String data = callbackQuery.getData();
 
         String currency = data.substring(prefix.length());
-        Set<String> selected = storage.get(chatId);
-        if (selected == null)
-        {
-            selected = new HashSet<>();
-            storage.put(chatId, selected);
-        }
-
-        if (selected.contains(currency))
-        {
-            selected.remove(currency);
-        }
-        else
-        {
-            selected.add(currency);
-        }
+        sessions.get(chatId).toggle(selection, currency);
 
         try
         {
@@ -216,8 +297,8 @@ public class CryptoBot extends TelegramLongPollingBot
 
     private void handleAddDone(long chatId, long messageId)
     {
-        Set<String> currencies = selectedCurrencies.get(chatId);
-        if (currencies == null || currencies.isEmpty())
+        List<String> currencies = sessions.getSelected(chatId, SessionStore.Selection.ADD);
+        if (currencies.isEmpty())
         {
             sendConfirmation(chatId, messageId, "⚠️ Нет выбранных валют для добавления");
             return;
@@ -252,8 +333,8 @@ public class CryptoBot extends TelegramLongPollingBot
 
     private void handleRemoveDone(long chatId, long messageId)
     {
-        Set<String> currencies = removalSelectedCurrencies.get(chatId);
-        if (currencies == null || currencies.isEmpty())
+        List<String> currencies = sessions.getSelected(chatId, SessionStore.Selection.REMOVE);
+        if (currencies.isEmpty())
         {
             sendConfirmation(chatId, messageId, "⚠️ Нет выбранных валют для удаления");
             return;
@@ -269,7 +350,7 @@ public class CryptoBot extends TelegramLongPollingBot
                 dbHelper.removeCurrency(chatId, currency);
                 removedCurrencies.add(currency);
                 // Также удаляем настройки уведомлений
-                dbHelper.removeNotificationSetting(chatId, currency);
+                unsubscribeNotification(chatId, currency);
             }
             else
             {
@@ -289,22 +370,25 @@ public class CryptoBot extends TelegramLongPollingBot
 
     private void handlePriceDone(long chatId, long messageId)
     {
-        Set<String> currencies = priceSelectedCurrencies.get(chatId);
-        if (currencies == null || currencies.isEmpty())
+        List<String> currencies = sessions.getSelected(chatId, SessionStore.Selection.PRICE);
+        if (currencies.isEmpty())
         {
             sendConfirmation(chatId, messageId, "⚠️ Нет выбранных валют для проверки курса");
             return;
         }
 
+        // Получаем цены всех выбранных валют одним запросом
+        Map<String, PriceQuote> prices = fetchPrices(currencies);
+
         StringBuilder message = new StringBuilder();
         for (String symbol : currencies)
         {
-            try
+            PriceQuote price = prices.get(symbol);
+            if (price != null)
             {
-                double price = apiService.getPrice(symbol);
-                message.append(symbol).append(": $").append(String.format("%.2f", price)).append("\n");
+                message.append(symbol).append(": ").append(formatQuote(price)).append("\n");
             }
-            catch (Exception e)
+            else
             {
                 message.append(symbol).append(": ошибка получения курса\n");
             }
@@ -360,7 +444,6 @@ public class CryptoBot extends TelegramLongPollingBot
     private void handleCallbackQuery(Update update)
     {
         CallbackQuery callbackQuery = update.getCallbackQuery();
-        long userId = callbackQuery.getFrom().getId();
         String data = callbackQuery.getData();
         long messageId = callbackQuery.getMessage().getMessageId();
         long chatId = callbackQuery.getMessage().getChatId();
@@ -386,48 +469,58 @@ public class CryptoBot extends TelegramLongPollingBot
             sendPriceKeyboard(chatId);
             return;
         }
+        else if (data.equals(ALERTS_COMMAND))
+        {
+            handleAlertsCommand(chatId);
+            return;
+        }
+        else if (data.startsWith(REMOVE_ALERT_PREFIX))
+        {
+            handleRemoveAlert(chatId, messageId, data.substring(REMOVE_ALERT_PREFIX.length()));
+            return;
+        }
+        else if (data.startsWith(SUGGESTION_PREFIX))
+        {
+            handleSuggestion(chatId, data.substring(SUGGESTION_PREFIX.length()));
+            return;
+        }
 
         // Обработка мультивыбора
-        if (userStates.containsKey(chatId) && "waiting_for_multi_add".equals(userStates.get(chatId)))
+        SessionStore.ChatState state = sessions.getState(chatId);
+        if (state == SessionStore.ChatState.MULTI_ADD)
         {
             if (data.equals(MANUAL_COMMAND))
             {
-                userStates.put(userId, "waiting_for_manual_currency");
+                sessions.setState(chatId, SessionStore.ChatState.MANUAL_ADD);
                 sendMessage(chatId, "Пожалуйста, введите символ валюты (например, BTC, ETH)");
                 return;
             }
             else if (data.equals(DONE_COMMAND))
             {
                 handleAddDone(chatId, messageId);
-                userStates.remove(chatId);
-                selectedCurrencies.remove(chatId);
+                sessions.finishSelection(chatId, SessionStore.Selection.ADD);
                 return;
             }
             else if (data.startsWith(CURRENCY_PREFIX))
             {
-                handleMultiSelect(update, CURRENCY_PREFIX, selectedCurrencies,
+                handleMultiSelect(update, CURRENCY_PREFIX, SessionStore.Selection.ADD,
                         "Выберите валюту из списка популярных или введите вручную:",
                         this::generateCurrencyKeyboard);
                 return;
             }
         }
-        else if (userStates.containsKey(chatId) && "waiting_for_multi_remove".equals(userStates.get(chatId)))
+        else if (state == SessionStore.ChatState.MULTI_REMOVE)
         {
             if (data.equals(REMOVE_DONE_COMMAND))
             {
+                // handleRemoveDone также удаляет настройки уведомлений
                 handleRemoveDone(chatId, messageId);
-                userStates.remove(chatId);
-                removalSelectedCurrencies.remove(chatId);
-                // Также удаляем настройки уведомлений
-                for (String currency : removalSelectedCurrencies.get(chatId))
-                {
-                    dbHelper.removeNotificationSetting(chatId, currency);
-                }
+                sessions.finishSelection(chatId, SessionStore.Selection.REMOVE);
                 return;
             }
             else if (data.startsWith(REMOVE_CURRENCY_PREFIX))
             {
-                handleMultiSelect(update, REMOVE_CURRENCY_PREFIX, removalSelectedCurrencies,
+                handleMultiSelect(update, REMOVE_CURRENCY_PREFIX, SessionStore.Selection.REMOVE,
                         "Выберите валюту для удаления из избранного:",
                         chatId1 -> generateRemoveKeyboard(chatId1, dbHelper.getFavoriteCurrencies(chatId1)));
                 return;
@@ -435,20 +528,19 @@ public class CryptoBot extends TelegramLongPollingBot
         }
         else if (data.equals(PRICE_MANUAL_COMMAND))
         {
-            userStates.put(chatId, "waiting_for_manual_price");
+            sessions.setState(chatId, SessionStore.ChatState.MANUAL_PRICE);
             sendMessage(chatId, "Пожалуйста, введите символ валюты для проверки курса");
             return;
         }
         else if (data.equals(PRICE_DONE_COMMAND))
         {
             handlePriceDone(chatId, messageId);
-            userStates.remove(chatId);
-            priceSelectedCurrencies.remove(chatId);
+            sessions.finishSelection(chatId, SessionStore.Selection.PRICE);
             return;
         }
         else if (data.startsWith(PRICE_CURRENCY_PREFIX))
         {
-            handleMultiSelect(update, PRICE_CURRENCY_PREFIX, priceSelectedCurrencies,
+            handleMultiSelect(update, PRICE_CURRENCY_PREFIX, SessionStore.Selection.PRICE,
                     "Выберите валюты для проверки курса:",
                     this::generatePriceKeyboard);
             return;
@@ -484,24 +576,21 @@ public class CryptoBot extends TelegramLongPollingBot
         // Обработка ручного ввода
         else if (data.equals(MANUAL_COMMAND))
         {
-            // Определяем текущее состояние пользователя
-            String currentState = userStates.get(chatId);
-
             // Устанавливаем соответствующий статус в зависимости от текущего режима
-            if ("waiting_for_multi_remove".equals(currentState))
+            if (state == SessionStore.ChatState.MULTI_REMOVE)
             {
-                userStates.put(userId, "waiting_for_remove_manual");
+                sessions.setState(chatId, SessionStore.ChatState.MANUAL_REMOVE);
                 sendMessage(chatId, "Пожалуйста, введите символ валюты для удаления (например, BTC, ETH)");
             }
-            else if ("waiting_for_multi_price".equals(currentState))
+            else if (state == SessionStore.ChatState.MULTI_PRICE)
             {
-                userStates.put(userId, "waiting_for_manual_price");
+                sessions.setState(chatId, SessionStore.ChatState.MANUAL_PRICE);
                 sendMessage(chatId, "Пожалуйста, введите символ валюты для проверки курса");
             }
             else
             {
                 // По умолчанию - режим добавления
-                userStates.put(userId, "waiting_for_manual_currency");
+                sessions.setState(chatId, SessionStore.ChatState.MANUAL_ADD);
                 sendMessage(chatId, "Пожалуйста, введите символ валюты (например, BTC, ETH)");
             }
             return;
@@ -535,7 +624,7 @@ public class CryptoBot extends TelegramLongPollingBot
         else if (data.startsWith(NOTIFICATION_SETTING_PREFIX))
         {
             String currency = data.substring(NOTIFICATION_SETTING_PREFIX.length());
-            notificationSettings.put(chatId, currency);
+            sessions.setNotificationCurrency(chatId, currency);
             sendIntervalOptions(chatId);
             return;
         }
@@ -544,23 +633,23 @@ public class CryptoBot extends TelegramLongPollingBot
             String intervalKey = data.substring(NOTIFICATION_INTERVAL_PREFIX.length());
             Integer minutes = NOTIFICATION_INTERVALS.get(intervalKey);
 
-            if (minutes != null && notificationSettings.containsKey(chatId))
+            String currency = sessions.getNotificationCurrency(chatId);
+            if (minutes != null && currency != null)
             {
-                String currency = notificationSettings.get(chatId);
-                dbHelper.addNotificationSetting(chatId, currency, minutes);
+                subscribeNotification(chatId, currency, minutes);
 
                 sendConfirmation(chatId, messageId,
                         "✅ Уведомления для " + currency +
                                 " установлены на каждые " + intervalKey);
 
-                notificationSettings.remove(chatId);
+                sessions.setNotificationCurrency(chatId, null);
                 sendNotificationMenu(chatId);
             }
             return;
         }
         else if (data.equals(CUSTOM_INTERVAL_COMMAND))
         {
-            String currency = notificationSettings.get(chatId);
+            String currency = sessions.getNotificationCurrency(chatId);
             if (currency == null)
             {
                 sendConfirmation(chatId, messageId, "❌ Ошибка: не выбрана валюта");
@@ -568,7 +657,7 @@ public class CryptoBot extends TelegramLongPollingBot
             }
 
             // Устанавливаем состояние ожидания ввода
-            userStates.put(chatId, WAITING_FOR_CUSTOM_INTERVAL);
+            sessions.setState(chatId, SessionStore.ChatState.CUSTOM_INTERVAL);
 
             sendMessage(chatId,
                     "Введите интервал уведомлений для " + currency + " (в минутах):\n\n" +
@@ -591,8 +680,8 @@ public class CryptoBot extends TelegramLongPollingBot
                 return;
             }
 
-            // Удаляем уведомление из базы данных
-            dbHelper.removeNotificationSetting(chatId, currency);
+            // Удаляем уведомление из базы данных и планировщика
+            unsubscribeNotification(chatId, currency);
 
             // Отправляем подтверждение
             sendConfirmation(chatId, messageId,
@@ -600,7 +689,7 @@ public class CryptoBot extends TelegramLongPollingBot
                             " удалены\n\nТеперь вы не будете получать уведомления для этой валюты");
 
             // Очищаем временные данные
-            notificationSettings.remove(chatId);
+            sessions.setNotificationCurrency(chatId, null);
 
             // Возвращаемся к меню уведомлений
             sendNotificationMenu(chatId);
@@ -609,7 +698,7 @@ public class CryptoBot extends TelegramLongPollingBot
         else if (data.equals(NOTIFICATION_FINISH))
         {
             // Очищаем временные настройки
-            notificationSettings.remove(chatId);
+            sessions.setNotificationCurrency(chatId, null);
 
             // Возвращаемся в главное меню
             sendMainMenu(chatId);
@@ -617,7 +706,7 @@ public class CryptoBot extends TelegramLongPollingBot
         }
         else if (data.equals(NOTIFICATION_CANCEL))
         {
-            notificationSettings.remove(chatId);
+            sessions.setNotificationCurrency(chatId, null);
             sendNotificationMenu(chatId);
             return;
         }
@@ -684,7 +773,7 @@ public class CryptoBot extends TelegramLongPollingBot
 
     private void sendIntervalOptions(long chatId)
     {
-        String currency = notificationSettings.get(chatId);
+        String currency = sessions.getNotificationCurrency(chatId);
 
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> rows = new ArrayList<>();
@@ -766,16 +855,11 @@ public class CryptoBot extends TelegramLongPollingBot
         }
     }
 
-    private void sendMultiSelectKeyboard(long chatId, String state, Map<Long, Set<String>> storage,
+    private void sendMultiSelectKeyboard(long chatId, SessionStore.ChatState state, SessionStore.Selection selection,
                                          String messageText, Function<Long, InlineKeyboardMarkup> keyboardGenerator)
     {
-        // Очищаем предыдущее состояние и выбранные валюты
-        userStates.remove(chatId);
-        storage.remove(chatId);
-
-        // Устанавливаем новое состояние
-        userStates.put(chatId, state);
-        storage.put(chatId, new HashSet<>());
+        // Устанавливаем новое состояние и очищаем ранее выбранные валюты
+        sessions.startSelection(chatId, state, selection);
 
         // Отправляем клавиатуру
         SendMessage message = new SendMessage();
@@ -794,14 +878,14 @@ public class CryptoBot extends TelegramLongPollingBot
 
     private void sendAddKeyboard(long chatId)
     {
-        sendMultiSelectKeyboard(chatId, "waiting_for_multi_add", selectedCurrencies,
+        sendMultiSelectKeyboard(chatId, SessionStore.ChatState.MULTI_ADD, SessionStore.Selection.ADD,
                 "Выберите валюту из списка популярных или введите вручную:",
                 this::generateCurrencyKeyboard);
     }
 
     private void sendPriceKeyboard(long chatId)
     {
-        sendMultiSelectKeyboard(chatId, "waiting_for_multi_price", priceSelectedCurrencies,
+        sendMultiSelectKeyboard(chatId, SessionStore.ChatState.MULTI_PRICE, SessionStore.Selection.PRICE,
                 "Выберите валюты для проверки курса:",
                 this::generatePriceKeyboard);
     }
@@ -817,13 +901,8 @@ public class CryptoBot extends TelegramLongPollingBot
             return;
         }
 
-        // Очищаем предыдущее состояние и выбранные валюты для удаления
-        userStates.remove(chatId);
-        removalSelectedCurrencies.remove(chatId);
-
-        // Устанавливаем новое состояние
-        userStates.put(chatId, "waiting_for_multi_remove");
-        removalSelectedCurrencies.put(chatId, new HashSet<>());
+        // Устанавливаем новое состояние и очищаем ранее выбранные валюты для удаления
+        sessions.startSelection(chatId, SessionStore.ChatState.MULTI_REMOVE, SessionStore.Selection.REMOVE);
 
         // Отправляем клавиатуру с избранными валютами
         SendMessage message = new SendMessage();
@@ -847,34 +926,27 @@ public class CryptoBot extends TelegramLongPollingBot
         long chatId = update.getMessage().getChatId();
 
         // Обработка состояний ручного ввода
-        if (userStates.containsKey(chatId))
+        SessionStore.ChatState state = sessions.getState(chatId);
+        String currency = messageText.trim().toUpperCase();
+        switch (state)
         {
-            String state = userStates.get(chatId);
-            String currency = messageText.trim().toUpperCase();
-
-            if ("waiting_for_manual_currency".equals(state))
-            {
+            case MANUAL_ADD:
                 handleManualInput(chatId, currency, InputAction.ADD);
-                userStates.remove(chatId);
+                sessions.resetState(chatId);
                 return;
-            }
-            else if ("waiting_for_remove_manual".equals(state))
-            {
+            case MANUAL_REMOVE:
                 handleManualInput(chatId, currency, InputAction.REMOVE);
-                userStates.remove(chatId);
+                sessions.resetState(chatId);
                 return;
-            }
-            else if ("waiting_for_manual_price".equals(state))
-            {
+            case MANUAL_PRICE:
                 handleManualInput(chatId, currency, InputAction.PRICE);
-                userStates.remove(chatId);
+                sessions.resetState(chatId);
                 return;
-            }
-            else if (WAITING_FOR_CUSTOM_INTERVAL.equals(userStates.get(chatId)))
-            {
+            case CUSTOM_INTERVAL:
                 handleCustomIntervalInput(chatId, messageText);
                 return;
-            }
+            default:
+                break;
         }
 
         // Обработка команд
@@ -898,6 +970,14 @@ public class CryptoBot extends TelegramLongPollingBot
         {
             handleListCommand(chatId);
         }
+        else if (messageText.equals("/alerts"))
+        {
+            handleAlertsCommand(chatId);
+        }
+        else if (messageText.equals("/alert") || messageText.startsWith("/alert "))
+        {
+            handleAlertCommand(chatId, messageText.trim());
+        }
         else
         {
             sendMessage(chatId, "Неизвестная команда. Используйте /start для помощи.");
@@ -927,15 +1007,10 @@ public class CryptoBot extends TelegramLongPollingBot
         }
     }
 
-    private InlineKeyboardMarkup generateGenericKeyboard(long chatId, Map<Long, Set<String>> storage,
+    private InlineKeyboardMarkup generateGenericKeyboard(long chatId, SessionStore.Selection selection,
                                                          String callbackPrefix, String buttonTextSuffix)
     {
-        Set<String> selected = storage.get(chatId);
-        if (selected == null)
-        {
-            selected = new HashSet<>();
-            storage.put(chatId, selected);
-        }
+        SessionStore.Session session = sessions.get(chatId);
 
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> rows = new ArrayList<>();
@@ -945,7 +1020,7 @@ public class CryptoBot extends TelegramLongPollingBot
         {
             String symbol = POPULAR_CURRENCIES.get(i);
             InlineKeyboardButton button = new InlineKeyboardButton();
-            button.setText(symbol + (selected.contains(symbol) ? buttonTextSuffix : ""));
+            button.setText(symbol + (session.isSelected(selection, symbol) ? buttonTextSuffix : ""));
             button.setCallbackData(callbackPrefix + symbol);
 
             // Добавляем кнопку в текущую строку
@@ -990,20 +1065,16 @@ public class CryptoBot extends TelegramLongPollingBot
             return null;
         }
 
+        // Получаем цены всех избранных валют одним запросом
+        Map<String, PriceQuote> prices = fetchPrices(currencies);
+
         for (int i = 0; i < currencies.size(); i++)
         {
             String currency = currencies.get(i);
-            String priceText = "N/A";
-
-            try
-            {
-                double price = apiService.getPrice(currency);
-                priceText = String.format("$%.2f", price);
-            }
-            catch (Exception e)
-            {
-                logger.error("Ошибка при получении цены для {}", currency, e);
-            }
+            PriceQuote price = prices.get(currency);
+            // На кнопке мало места: у устаревшей цены только значок
+            String priceText = price == null ? "N/A"
+                    : String.format("$%.2f", price.getPrice()) + (price.isStale() ? " ⏳" : "");
 
             InlineKeyboardButton button = new InlineKeyboardButton();
             button.setText(currency + " - " + priceText);
@@ -1027,19 +1098,50 @@ public class CryptoBot extends TelegramLongPollingBot
         return markup;
     }
 
-    private InlineKeyboardMarkup generateCurrencyKeyboard(long chatId)
+    // Пакетное получение цен; при ошибке API или таймауте возвращает пустую карту.
+    // Все пачки запрашиваются параллельно, ожидание ограничено PRICE_TIMEOUT_SECONDS.
+    // Если API недоступен, в карте могут быть последние известные цены с признаком устаревания
+    private Map<String, PriceQuote> fetchPrices(Collection<String> currencies)
     {
-        return generateGenericKeyboard(chatId, selectedCurrencies, "currency:", " ✅");
+        try
+        {
+            return apiService.getQuotesAsync(currencies).get(PRICE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return Collections.emptyMap();
+        }
+        catch (Exception e)
+        {
+            logger.error("Ошибка при получении цен для {}", currencies, e);
+            return Collections.emptyMap();
+        }
     }
 
-    private InlineKeyboardMarkup generatePriceKeyboard(long chatId)
+    // "$123.45" для свежей цены, "$123.45 (⏳ данные 12 мин назад)" для устаревшей
+    static String formatQuote(PriceQuote quote)
     {
-        Set<String> selected = priceSelectedCurrencies.get(chatId);
-        if (selected == null)
+        String price = "$" + String.format("%.2f", quote.getPrice());
+        if (!quote.isStale())
         {
-            selected = new HashSet<>();
-            priceSelectedCurrencies.put(chatId, selected);
+            return price;
         }
+        long minutes = TimeUnit.MILLISECONDS.toMinutes(quote.getAgeMillis());
+        String age = minutes < 1 ? "меньше минуты"
+                : minutes < 60 ? minutes + " мин"
+                : TimeUnit.MINUTES.toHours(minutes) + " ч";
+        return price + " (⏳ данные " + age + " назад)";
+    }
+
+    private InlineKeyboardMarkup generateCurrencyKeyboard(long chatId)
+    {
+        return generateGenericKeyboard(chatId, SessionStore.Selection.ADD, "currency:", " ✅");
+    }
+
+    private InlineKeyboardMarkup generatePriceKeyboard(long chatId)
+    {
+        SessionStore.Session session = sessions.get(chatId);
 
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> rows = new ArrayList<>();
@@ -1049,7 +1151,7 @@ public class CryptoBot extends TelegramLongPollingBot
         for (String symbol : POPULAR_CURRENCIES)
         {
             InlineKeyboardButton button = new InlineKeyboardButton();
-            button.setText(symbol + (selected.contains(symbol) ? " ✅" : ""));
+            button.setText(symbol + (session.isSelected(SessionStore.Selection.PRICE, symbol) ? " ✅" : ""));
             button.setCallbackData("price_currency:" + symbol);
             row.add(button);
             if (row.size() == 3)
@@ -1082,12 +1184,7 @@ public class CryptoBot extends TelegramLongPollingBot
     private InlineKeyboardMarkup generateRemoveKeyboard(long chatId, List<String> currencies)
     {
         List<String> cleanCurrencies = cleanCurrencyList(currencies);
-        Set<String> selected = removalSelectedCurrencies.get(chatId);
-        if (selected == null)
-        {
-            selected = new HashSet<>();
-            removalSelectedCurrencies.put(chatId, selected);
-        }
+        SessionStore.Session session = sessions.get(chatId);
 
         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
         List<List<InlineKeyboardButton>> rows = new ArrayList<>();
@@ -1097,7 +1194,7 @@ public class CryptoBot extends TelegramLongPollingBot
         {
             String symbol = cleanCurrencies.get(i);
             InlineKeyboardButton button = new InlineKeyboardButton();
-            button.setText(symbol + (selected.contains(symbol) ? " ❌" : ""));
+            button.setText(symbol + (session.isSelected(SessionStore.Selection.REMOVE, symbol) ? " ❌" : ""));
             button.setCallbackData("remove_currency:" + symbol);
 
             if (rows.isEmpty() || rows.get(rows.size() - 1).size() >= 3)
@@ -1133,6 +1230,67 @@ public class CryptoBot extends TelegramLongPollingBot
         return cleaned;
     }
 
+    // Ответ на неизвестную валюту: похожие валюты из справочника кнопками,
+    // нажатие повторяет то же действие с выбранным символом
+    private void sendNotFound(long chatId, String text, String input, InputAction action)
+    {
+        List<List<InlineKeyboardButton>> rows = new ArrayList<>();
+        for (String symbol : apiService.suggestSymbols(input, MAX_SYMBOL_SUGGESTIONS))
+        {
+            String callbackData = SUGGESTION_PREFIX + action.name() + ":" + symbol;
+            if (callbackData.length() > MAX_CALLBACK_DATA_LENGTH)
+            {
+                continue;
+            }
+            String name = apiService.getSymbolName(symbol);
+            InlineKeyboardButton button = new InlineKeyboardButton();
+            button.setText(name == null || name.equals(symbol) ? symbol : symbol + " · " + name);
+            button.setCallbackData(callbackData);
+            rows.add(Collections.singletonList(button));
+        }
+
+        SendMessage message = new SendMessage();
+        message.setChatId(String.valueOf(chatId));
+        if (rows.isEmpty())
+        {
+            message.setText(text);
+        }
+        else
+        {
+            message.setText(text + "\nВозможно, вы имели в виду:");
+            InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
+            markup.setKeyboard(rows);
+            message.setReplyMarkup(markup);
+        }
+        try
+        {
+            execute(message);
+        }
+        catch (TelegramApiException e)
+        {
+            logger.error("Ошибка при отправке похожих валют", e);
+        }
+    }
+
+    // Нажатие на похожую валюту: "ADD:BTC" или "PRICE:ETH"
+    private void handleSuggestion(long chatId, String data)
+    {
+        int separator = data.indexOf(':');
+        if (separator <= 0)
+        {
+            return;
+        }
+        try
+        {
+            InputAction action = InputAction.valueOf(data.substring(0, separator));
+            handleManualInput(chatId, data.substring(separator + 1), action);
+        }
+        catch (IllegalArgumentException e)
+        {
+            logger.warn("Неизвестное действие в подсказке: {}", data);
+        }
+    }
+
     private void handleManualInput(long chatId, String currency, InputAction action)
     {
         // Приводим валюту к верхнему регистру для корректной проверки
@@ -1155,7 +1313,8 @@ public class CryptoBot extends TelegramLongPollingBot
                     }
                     else
                     {
-                        sendConfirmation(chatId, 0, "❌ Валюта " + normalizedCurrency + " не найдена. Проверьте правильность символа.");
+                        sendNotFound(chatId, "❌ Валюта " + normalizedCurrency + " не найдена. Проверьте правильность символа.",
+                                currency, InputAction.ADD);
                     }
                     break;
 
@@ -1172,8 +1331,14 @@ public class CryptoBot extends TelegramLongPollingBot
                     break;
 
                 case PRICE:
-                    double price = apiService.getPrice(normalizedCurrency);
-                    sendMessage(chatId, "Курс " + normalizedCurrency + ": $" + String.format("%.2f", price));
+                    // Несуществующая валюта отсекается справочником, без запроса цены
+                    if (!apiService.isCurrencyValid(normalizedCurrency))
+                    {
+                        sendNotFound(chatId, "❌ Валюта " + normalizedCurrency + " не найдена.", currency, InputAction.PRICE);
+                        break;
+                    }
+                    PriceQuote quote = apiService.getQuote(normalizedCurrency);
+                    sendMessage(chatId, "Курс " + normalizedCurrency + ": " + formatQuote(quote));
                     break;
             }
         }
@@ -1221,15 +1386,15 @@ public class CryptoBot extends TelegramLongPollingBot
                 return;
             }
 
-            String currency = notificationSettings.get(chatId);
+            String currency = sessions.getNotificationCurrency(chatId);
             if (currency == null)
             {
                 sendMessage(chatId, "❌ Ошибка: не выбрана валюта");
-                userStates.remove(chatId);
+                sessions.resetState(chatId);
                 return;
             }
 
-            dbHelper.addNotificationSetting(chatId, currency, minutes);
+            subscribeNotification(chatId, currency, minutes);
 
             sendMessage(chatId,
                     "✅ Уведомления для " + currency +
@@ -1237,8 +1402,8 @@ public class CryptoBot extends TelegramLongPollingBot
                             "Следующее уведомление придет через " + minutes + " минут");
 
             // Очищаем временные данные
-            notificationSettings.remove(chatId);
-            userStates.remove(chatId);
+            sessions.setNotificationCurrency(chatId, null);
+            sessions.resetState(chatId);
 
             // Возвращаемся к меню уведомлений
             sendNotificationMenu(chatId);
@@ -1315,159 +1480,301 @@ public class CryptoBot extends TelegramLongPollingBot
         }
     }
 
-    private void checkNotifications()
+    // Обработка уведомлений, которые наступили по планировщику.
+    // Уведомления группируются по валюте: цена каждой валюты получается один раз,
+    // и все подписчики группы получают один и тот же снимок цены
+    private void processDueNotifications(List<DatabaseHelper.ScheduledNotification> dueNotifications, long firedAtSeconds)
     {
-        long currentTimeSeconds = System.currentTimeMillis() / 1000; // Текущее время в секундах
-        logger.info("Проверка уведомлений. Текущее время: {}", new Date(currentTimeSeconds * 1000));
-
-        try
+        Map<String, List<DatabaseHelper.ScheduledNotification>> byCurrency = new LinkedHashMap<>();
+        for (DatabaseHelper.ScheduledNotification due : dueNotifications)
         {
-            // Получаем список всех пользователей с активными уведомлениями
-            Set<Long> allUserIds = getAllUserIdsWithNotifications();
+            byCurrency.computeIfAbsent(due.getCurrency(), currency -> new ArrayList<>()).add(due);
+        }
 
-            for (Long userId : allUserIds)
+        // Цены для всех валют получаем одним пакетным запросом
+        Map<String, PriceQuote> prices = fetchPrices(byCurrency.keySet());
+
+        List<DatabaseHelper.ScheduledNotification> queued = new ArrayList<>(dueNotifications.size());
+        List<DatabaseHelper.ScheduledNotification> dropped = new ArrayList<>();
+        for (Map.Entry<String, List<DatabaseHelper.ScheduledNotification>> group : byCurrency.entrySet())
+        {
+            String currency = group.getKey();
+            PriceQuote price = prices.get(currency);
+            String text = price != null
+                    ? "🔔 Уведомление: " + currency + (price.isStale() ? " стоит " : " сейчас стоит ") + formatQuote(price)
+                    : "❌ Не удалось получить цену для " + currency + ". Попробуйте позже.";
+            if (price == null)
             {
-                List<DatabaseHelper.NotificationSetting> settings = dbHelper.getNotificationSettings(userId);
-                logger.info("Проверка уведомлений для пользователя {}: {} настроек", userId, settings.size());
+                logger.error("Ошибка при получении цены {} для {} подписчиков", currency, group.getValue().size());
+            }
 
-                for (DatabaseHelper.NotificationSetting setting : settings)
+            for (DatabaseHelper.ScheduledNotification due : group.getValue())
+            {
+                if (sendNotification(due.getUserId(), text))
                 {
-                    try
-                    {
-                        if (shouldSendNotification(userId, setting, currentTimeSeconds))
-                        {
-                            logger.info("Отправка уведомления для {} ({}): интервал {} минут",
-                                    userId, setting.getCurrency(), setting.getIntervalMinutes());
-
-                            sendNotification(userId, setting);
-                            updateLastNotificationTime(userId, setting.getCurrency());
-                        }
-                    }
-                    catch (Exception e)
-                    {
-                        logger.error("Ошибка при обработке уведомления для пользователя {} и валюты {}",
-                                userId, setting.getCurrency(), e);
-                    }
+                    queued.add(due);
+                }
+                else
+                {
+                    dropped.add(due);
                 }
             }
         }
-        catch (Exception e)
+
+        // Время последнего уведомления обновляем одной транзакцией, только для поставленных в очередь:
+        // отброшенное уведомление не считается отправленным и повторяется вскоре, а не через интервал
+        dbHelper.markNotificationsSent(queued, firedAtSeconds);
+        for (DatabaseHelper.ScheduledNotification due : dropped)
         {
-            logger.error("Критическая ошибка при проверке уведомлений", e);
+            notificationScheduler.retry(due, TimeUnit.SECONDS.toMillis(NOTIFICATION_RETRY_SECONDS));
         }
+
+        logger.info("Уведомления: валют {}, сообщений в очереди {}, отложено {}",
+                byCurrency.size(), queued.size(), dropped.size());
     }
 
-    private Set<Long> getAllUserIdsWithNotifications()
+    // Периодическая статистика подсистем; исключение не должно отменить следующие запуски
+    private void logStats()
     {
-        Set<Long> userIds = new HashSet<>();
-        try (Connection conn = DriverManager.getConnection(DatabaseHelper.DB_URL);
-             PreparedStatement stmt = conn.prepareStatement("SELECT DISTINCT user_id FROM notifications");
-             ResultSet rs = stmt.executeQuery())
+        try
         {
-
-            while (rs.next())
+            logger.info("Подписок {}; рассылка: {}; обновления: {}",
+                    notificationScheduler.size(), messageDispatcher.getStats(), updateDispatcher.getStats());
+            logger.info("API: {}; {}; {}; {}", apiService.getResilienceStats(), apiService.getStreamStats(),
+                    alertEngine.getStats(), inlineQueryHandler.getStats());
+            WebhookServer webhook = webhookServer;
+            if (webhook != null)
             {
-                userIds.add(rs.getLong("user_id"));
+                logger.info("Webhook: {}", webhook.getStats());
             }
         }
-        catch (SQLException e)
+        catch (RuntimeException e)
         {
-            logger.error("Ошибка при получении списка пользователей с уведомлениями", e);
+            logger.error("Не удалось записать статистику", e);
         }
-        return userIds;
     }
 
-    private boolean shouldSendNotification(long userId, DatabaseHelper.NotificationSetting setting, long currentTimeSeconds)
+    // Создание алерта командой /alert
+    private void handleAlertCommand(long chatId, String messageText)
     {
-        try (Connection conn = DriverManager.getConnection(DatabaseHelper.DB_URL);
-             PreparedStatement stmt = conn.prepareStatement(
-                     "SELECT last_notification FROM notifications WHERE user_id = ? AND currency = ?"))
+        Matcher threshold = THRESHOLD_ALERT_PATTERN.matcher(messageText);
+        Matcher change = CHANGE_ALERT_PATTERN.matcher(messageText);
+        PriceAlert.Type type;
+        String currency;
+        double value;
+        int windowMinutes = 0;
+        if (threshold.matches())
         {
+            currency = threshold.group(1).toUpperCase();
+            type = threshold.group(2).equals(">") ? PriceAlert.Type.ABOVE : PriceAlert.Type.BELOW;
+            value = Double.parseDouble(threshold.group(3).replace(',', '.'));
+        }
+        else if (change.matches())
+        {
+            currency = change.group(1).toUpperCase();
+            type = PriceAlert.Type.CHANGE;
+            value = Double.parseDouble(change.group(2).replace(',', '.'));
+            windowMinutes = parseWindowMinutes(Integer.parseInt(change.group(3)), change.group(4));
+        }
+        else
+        {
+            sendMessage(chatId, ALERT_USAGE);
+            return;
+        }
 
-            stmt.setLong(1, userId);
-            stmt.setString(2, setting.getCurrency());
-            ResultSet rs = stmt.executeQuery();
-
-            if (rs.next())
-            {
-                long lastNotification = rs.getLong("last_notification");
-                long intervalSeconds = setting.getIntervalMinutes() * 60L;
-
-                logger.debug("Проверка для {}: текущее время {}, последнее уведомление {}, интервал {} секунд",
-                        setting.getCurrency(), currentTimeSeconds, lastNotification, intervalSeconds);
+        if (value <= 0 || (type == PriceAlert.Type.CHANGE && (windowMinutes <= 0 || windowMinutes > AlertEngine.MAX_WINDOW_MINUTES)))
+        {
+            sendMessage(chatId, "⚠️ Порог должен быть больше нуля, а окно - от 1 минуты до 24 часов");
+            return;
+        }
+        if (dbHelper.countPriceAlerts(chatId) >= MAX_ALERTS_PER_USER)
+        {
+            sendMessage(chatId, "⚠️ Можно настроить не больше " + MAX_ALERTS_PER_USER + " алертов. Удалите ненужные в /alerts");
+            return;
+        }
 
-                // Добавляем небольшой запас времени (5 секунд) для надежности
-                return (currentTimeSeconds - lastNotification) >= intervalSeconds - 5;
-            }
+        // Текущая цена заодно проверяет, что валюта существует
+        PriceQuote quote;
+        try
+        {
+            quote = apiService.getQuote(currency);
         }
-        catch (SQLException e)
+        catch (Exception e)
         {
-            logger.error("Ошибка при проверке необходимости уведомления для {}",
-                    setting.getCurrency(), e);
+            sendMessage(chatId, "⚠️ Не удалось получить цену " + currency + ": " + e.getMessage());
+            return;
+        }
+        if ((type == PriceAlert.Type.ABOVE && quote.getPrice() >= value)
+                || (type == PriceAlert.Type.BELOW && quote.getPrice() <= value))
+        {
+            sendMessage(chatId, "ℹ️ " + currency + " уже " + (type == PriceAlert.Type.ABOVE ? "выше" : "ниже")
+                    + " $" + String.format("%.2f", value) + ": сейчас " + formatQuote(quote));
+            return;
+        }
+
+        PriceAlert alert = dbHelper.addPriceAlert(chatId, currency, type, value, windowMinutes);
+        if (alert == null)
+        {
+            sendMessage(chatId, "⚠️ Не удалось сохранить алерт, попробуйте позже");
+            return;
+        }
+        alertEngine.add(alert);
+        apiService.watchSymbols(Collections.singletonList(currency));
+        sendMessage(chatId, "✅ Алерт создан: " + describeAlert(alert) + "\nСейчас " + currency + ": " + formatQuote(quote));
+    }
+
+    private static int parseWindowMinutes(int amount, String unit)
+    {
+        switch (unit)
+        {
+            case "h":
+            case "ч":
+                return amount * 60;
+            case "d":
+            case "д":
+                return amount * 24 * 60;
+            default:
+                return amount;
         }
-        return false;
     }
 
-    private void updateLastNotificationTime(long chatId, String currency)
+    // Список алертов пользователя с кнопками удаления
+    private void handleAlertsCommand(long chatId)
     {
-        try (PreparedStatement stmt = dbHelper.getConnection().prepareStatement(
-                "UPDATE notifications SET last_notification = strftime('%s', 'now') " +
-                        "WHERE user_id = ? AND currency = ?"))
+        List<PriceAlert> alerts = dbHelper.getPriceAlerts(chatId);
+        if (alerts.isEmpty())
         {
-            stmt.setLong(1, chatId);
-            stmt.setString(2, currency);
-            stmt.executeUpdate();
+            sendMessage(chatId, "У вас нет ценовых алертов.\n\n" + ALERT_USAGE);
+            return;
         }
-        catch (SQLException e)
+
+        StringBuilder text = new StringBuilder("🚨 Ваши алерты:\n");
+        List<List<InlineKeyboardButton>> rows = new ArrayList<>();
+        for (int i = 0; i < alerts.size(); i++)
         {
-            e.printStackTrace();
+            PriceAlert alert = alerts.get(i);
+            text.append(i + 1).append(". ").append(describeAlert(alert)).append("\n");
+
+            InlineKeyboardButton removeButton = new InlineKeyboardButton();
+            removeButton.setText("❌ " + (i + 1) + ". " + alert.getCurrency());
+            removeButton.setCallbackData(REMOVE_ALERT_PREFIX + alert.getId());
+            rows.add(Collections.singletonList(removeButton));
+        }
+
+        InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
+        markup.setKeyboard(rows);
+
+        SendMessage message = new SendMessage();
+        message.setChatId(String.valueOf(chatId));
+        message.setText(text.toString());
+        message.setReplyMarkup(markup);
+        try
+        {
+            execute(message);
+        }
+        catch (TelegramApiException e)
+        {
+            logger.error("Ошибка при отправке списка алертов", e);
         }
     }
 
-    private void sendNotification(long chatId, DatabaseHelper.NotificationSetting setting)
+    private void handleRemoveAlert(long chatId, long messageId, String alertIdText)
     {
+        long alertId;
         try
         {
-            double price = apiService.getPrice(setting.getCurrency());
-            String formattedPrice = String.format("%.2f", price);
+            alertId = Long.parseLong(alertIdText);
+        }
+        catch (NumberFormatException e)
+        {
+            return;
+        }
 
-            SendMessage message = new SendMessage();
-            message.setChatId(String.valueOf(chatId));
-            message.setText("🔔 Уведомление: " + setting.getCurrency() +
-                    " сейчас стоит $" + formattedPrice);
-            message.setParseMode("HTML");
+        if (dbHelper.removePriceAlert(chatId, alertId))
+        {
+            alertEngine.remove(alertId);
+            sendConfirmation(chatId, messageId, "❌ Алерт удален");
+        }
+        else
+        {
+            sendConfirmation(chatId, messageId, "⚠️ Алерт уже сработал или был удален");
+        }
+        handleAlertsCommand(chatId);
+    }
 
-            execute(message);
+    private static String describeAlert(PriceAlert alert)
+    {
+        switch (alert.getType())
+        {
+            case ABOVE:
+                return alert.getCurrency() + " выше $" + String.format("%.2f", alert.getThreshold());
+            case BELOW:
+                return alert.getCurrency() + " ниже $" + String.format("%.2f", alert.getThreshold());
+            default:
+                return alert.getCurrency() + " изменится на " + String.format("%.2f", alert.getThreshold())
+                        + "% за " + formatWindow(alert.getWindowMinutes());
+        }
+    }
 
-            logger.info("Уведомление отправлено для {}: {} = ${}",
-                    chatId, setting.getCurrency(), formattedPrice);
+    private static String formatWindow(int minutes)
+    {
+        if (minutes % (24 * 60) == 0)
+        {
+            return minutes / (24 * 60) + " д";
         }
-        catch (Exception e)
+        if (minutes % 60 == 0)
         {
-            logger.error("Ошибка при отправке уведомления для {}",
-                    setting.getCurrency(), e);
+            return minutes / 60 + " ч";
+        }
+        return minutes + " мин";
+    }
 
-            try
-            {
-                SendMessage message = new SendMessage();
-                message.setChatId(String.valueOf(chatId));
-                message.setText("❌ Не удалось получить цену для " + setting.getCurrency() +
-                        ". Попробуйте позже.");
-                execute(message);
-            }
-            catch (Exception ex)
-            {
-                logger.error("Ошибка при отправке сообщения об ошибке", ex);
-            }
+    // Вызывается движком алертов в потоке, получившем цену: только удаление из базы и постановка в очередь
+    private void onAlertTriggered(PriceAlert alert, double price, double referencePrice)
+    {
+        dbHelper.removePriceAlerts(Collections.singletonList(alert.getId()));
+
+        String text;
+        switch (alert.getType())
+        {
+            case ABOVE:
+                text = "🚨 " + alert.getCurrency() + " поднялся до $" + String.format("%.2f", price)
+                        + " (алерт: выше $" + String.format("%.2f", referencePrice) + ")";
+                break;
+            case BELOW:
+                text = "🚨 " + alert.getCurrency() + " опустился до $" + String.format("%.2f", price)
+                        + " (алерт: ниже $" + String.format("%.2f", referencePrice) + ")";
+                break;
+            default:
+                double changePercent = (price - referencePrice) / referencePrice * 100;
+                text = "🚨 " + alert.getCurrency() + (changePercent >= 0 ? " вырос" : " упал") + " на "
+                        + String.format("%.2f", Math.abs(changePercent)) + "% за " + formatWindow(alert.getWindowMinutes())
+                        + ": $" + String.format("%.2f", price) + " (было $" + String.format("%.2f", referencePrice) + ")";
+                break;
+        }
+
+        if (!sendNotification(alert.getUserId(), text))
+        {
+            logger.warn("Очередь рассылки переполнена, алерт {} для {} не отправлен", alert.getId(), alert.getUserId());
         }
     }
 
+    // Сообщение отправляется асинхронно; false, если очередь рассылки переполнена
+    private boolean sendNotification(long chatId, String text)
+    {
+        SendMessage message = new SendMessage();
+        message.setChatId(String.valueOf(chatId));
+        message.setText(text);
+        message.setParseMode("HTML");
+        return messageDispatcher.submit(message);
+    }
+
     private void sendCurrencyChart(long chatId, String currency)
     {
         try
         {
             // Получаем исторические данные за 30 дней
-            List<CryptoApiService.HistoricalData> history = apiService.getHistoricalData(currency, "day", 30);
+            HistoricalSeries history = apiService.getHistoricalData(currency, "day", 30);
 
             if (history == null || history.isEmpty())
             {
@@ -1475,37 +1782,40 @@ public class CryptoBot extends TelegramLongPollingBot
                 return;
             }
 
-            // Формируем данные для графика
-            List<String> labels = new ArrayList<>();
-            List<Double> prices = new ArrayList<>();
+            String caption = "График курса " + currency + " за последние 30 дней";
 
-            for (CryptoApiService.HistoricalData data : history)
+            // Тот же график (валюта, интервал, последняя свеча) уже загружался в Telegram:
+            // отправляем его повторно по file_id, без отрисовки и загрузки
+            long lastCandleTime = history.getLastTime();
+            String chartKey = currency + ":day:" + lastCandleTime;
+            String fileId = chartFileIds.get(chartKey);
+            if (fileId != null)
             {
-                // Форматируем дату (день.месяц)
-                SimpleDateFormat sdf = new SimpleDateFormat("dd.MM");
-                String dateStr = sdf.format(new Date(data.getTimestamp() * 1000));
-                labels.add(dateStr);
-                prices.add(data.getPrice());
+                try
+                {
+                    sendChartPhoto(chatId, new InputFile(fileId), caption);
+                    return;
+                }
+                catch (TelegramApiException e)
+                {
+                    logger.warn("Не удалось отправить график {} по file_id, рисуем заново: {}", chartKey, e.getMessage());
+                    chartFileIds.remove(chartKey);
+                }
             }
 
-            // Генерируем URL для QuickChart
-            String chartUrl = generateQuickChartUrl(currency, labels, prices);
-
-            // Отправляем изображение графика
-            SendPhoto photo = new SendPhoto();
-            photo.setChatId(String.valueOf(chatId));
-            photo.setPhoto(new InputFile(chartUrl));
-            photo.setCaption("График курса " + currency + " за последние 30 дней");
+            // Рисуем график локально и отправляем PNG напрямую, без внешнего сервиса
+            byte[] chart = chartRenderer.renderLineChart(currency, history);
 
             try
             {
-                execute(photo);
+                Message sent = sendChartPhoto(chatId,
+                        new InputFile(new ByteArrayInputStream(chart), currency + "_chart.png"), caption);
+                rememberChartFileId(chartKey, sent);
             }
             catch (TelegramApiException e)
             {
                 sendMessage(chatId, "❌ Не удалось загрузить график: " + e.getMessage());
             }
-
         }
         catch (Exception e)
         {
@@ -1514,20 +1824,25 @@ public class CryptoBot extends TelegramLongPollingBot
         }
     }
 
-    private String generateQuickChartUrl(String currency, List<String> labels, List<Double> prices)
+    private Message sendChartPhoto(long chatId, InputFile photoFile, String caption) throws TelegramApiException
+    {
+        SendPhoto photo = new SendPhoto();
+        photo.setChatId(String.valueOf(chatId));
+        photo.setPhoto(photoFile);
+        photo.setCaption(caption);
+        return execute(photo);
+    }
+
+    // Запоминаем file_id самой большой версии фото, которую Telegram сохранил у себя
+    private void rememberChartFileId(String chartKey, Message sent)
     {
-        // Формируем JSON конфигурации графика
-        String config = String.format(
-                "{type:'line',data:{labels:%s,datasets:[{label:'%s/USD',data:%s," +
-                        "borderColor:'#36A2EB',backgroundColor:'rgba(54,162,235,0.1)',fill:true}]}, " +
-                        "options:{responsive:true,maintainAspectRatio:false,scales:{y:{beginAtZero:false}}}}",
-                new Gson().toJson(labels),
-                currency,
-                new Gson().toJson(prices)
-        );
-
-        // Кодируем JSON для URL
-        return "https://quickchart.io/chart?c=" + URLEncoder.encode(config, StandardCharsets.UTF_8);
+        if (sent == null || sent.getPhoto() == null || sent.getPhoto().isEmpty())
+        {
+            return;
+        }
+
+        PhotoSize largest = Collections.max(sent.getPhoto(), Comparator.comparingInt(PhotoSize::getWidth));
+        chartFileIds.put(chartKey, largest.getFileId());
     }
 
     @Override
@@ -122,7 +122,10 @@ package org.example.cryptobot;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static org.example.cryptobot.CryptoBot.logger;
 
@@ -130,26 +133,64 @@ public class DatabaseHelper
 {
     protected static final String DB_URL = "jdbc:sqlite:crypto_bot.db";
 
+    // Долгоживущие соединения вместо открытия файла базы на каждый запрос
+    private final ConnectionManager connections = new ConnectionManager(DB_URL);
+
     public void initDatabase()
     {
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             Statement stmt = conn.createStatement())
-        {
-            // Создаем таблицу для избранных валют
-            String sql = "CREATE TABLE IF NOT EXISTS user_currencies (" +
-                    "user_id INTEGER NOT NULL, " +
-                    "currency TEXT NOT NULL, " +
-                    "PRIMARY KEY(user_id, currency))";
-            stmt.execute(sql);
-
-            // Добавляем таблицу для уведомлений
-            String notificationSql = "CREATE TABLE IF NOT EXISTS notifications (" +
-                    "user_id INTEGER, " +
-                    "currency TEXT, " +
-                    "interval_minutes INTEGER, " +
-                    "last_notification INTEGER, " +
-                    "PRIMARY KEY (user_id, currency))";
-            stmt.execute(notificationSql);
+        try
+        {
+            connections.write(conn ->
+            {
+                try (Statement stmt = conn.getConnection().createStatement())
+                {
+                    // Создаем таблицу для избранных валют
+                    String sql = "CREATE TABLE IF NOT EXISTS user_currencies (" +
+                            "user_id INTEGER NOT NULL, " +
+                            "currency TEXT NOT NULL, " +
+                            "PRIMARY KEY(user_id, currency))";
+                    stmt.execute(sql);
+
+                    // Добавляем таблицу для уведомлений
+                    String notificationSql = "CREATE TABLE IF NOT EXISTS notifications (" +
+                            "user_id INTEGER, " +
+                            "currency TEXT, " +
+                            "interval_minutes INTEGER, " +
+                            "last_notification INTEGER, " +
+                            "PRIMARY KEY (user_id, currency))";
+                    stmt.execute(notificationSql);
+
+                    // Наступившие уведомления выбирает планировщик в памяти; индекс от прежнего
+                    // опроса базы больше не нужен и только замедлял бы каждую отметку об отправке
+                    stmt.execute("DROP INDEX IF EXISTS idx_notifications_due");
+
+                    // Локальная история свечей для графиков
+                    String candlesSql = "CREATE TABLE IF NOT EXISTS candles (" +
+                            "symbol TEXT NOT NULL, " +
+                            "timeframe TEXT NOT NULL, " +
+                            "time INTEGER NOT NULL, " +
+                            "open REAL, " +
+                            "high REAL, " +
+                            "low REAL, " +
+                            "close REAL, " +
+                            "volume REAL, " +
+                            "PRIMARY KEY (symbol, timeframe, time)) WITHOUT ROWID";
+                    stmt.execute(candlesSql);
+
+                    // Ценовые алерты: порог цены или процент изменения за окно
+                    String alertsSql = "CREATE TABLE IF NOT EXISTS price_alerts (" +
+                            "id INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                            "user_id INTEGER NOT NULL, " +
+                            "currency TEXT NOT NULL, " +
+                            "type TEXT NOT NULL, " +
+                            "threshold REAL NOT NULL, " +
+                            "window_minutes INTEGER NOT NULL DEFAULT 0, " +
+                            "created_at INTEGER NOT NULL)";
+                    stmt.execute(alertsSql);
+                    stmt.execute("CREATE INDEX IF NOT EXISTS idx_price_alerts_user ON price_alerts (user_id)");
+                }
+                return null;
+            });
 
             System.out.println("База данных создана/готова к работе.");
         }
@@ -159,20 +200,25 @@ public class DatabaseHelper
         }
     }
 
-    public Connection getConnection() throws SQLException
+    public ConnectionManager getConnectionManager()
     {
-        return DriverManager.getConnection(DB_URL);
+        return connections;
     }
 
     public boolean isCurrencyFavorite(long userId, String currency)
     {
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement stmt = conn.prepareStatement("SELECT 1 FROM user_currencies WHERE user_id = ? AND currency = ?"))
+        try
         {
-            stmt.setLong(1, userId);
-            stmt.setString(2, currency.toUpperCase());
-            ResultSet rs = stmt.executeQuery();
-            return rs.next();
+            return connections.read(conn ->
+            {
+                PreparedStatement stmt = conn.prepare("SELECT 1 FROM user_currencies WHERE user_id = ? AND currency = ?");
+                stmt.setLong(1, userId);
+                stmt.setString(2, currency.toUpperCase());
+                try (ResultSet rs = stmt.executeQuery())
+                {
+                    return rs.next();
+                }
+            });
         }
         catch (SQLException e)
         {
@@ -183,12 +229,15 @@ public class DatabaseHelper
 
     public void addCurrency(long userId, String currency)
     {
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement pstmt = conn.prepareStatement("INSERT OR REPLACE INTO user_currencies(user_id, currency) VALUES(?, ?)"))
+        try
         {
-            pstmt.setLong(1, userId);
-            pstmt.setString(2, currency.toUpperCase());
-            pstmt.executeUpdate();
+            connections.write(conn ->
+            {
+                PreparedStatement pstmt = conn.prepare("INSERT OR REPLACE INTO user_currencies(user_id, currency) VALUES(?, ?)");
+                pstmt.setLong(1, userId);
+                pstmt.setString(2, currency.toUpperCase());
+                return pstmt.executeUpdate();
+            });
         }
         catch (SQLException e)
         {
@@ -198,12 +247,15 @@ public class DatabaseHelper
 
     public void removeCurrency(long userId, String currency)
     {
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement pstmt = conn.prepareStatement("DELETE FROM user_currencies WHERE user_id = ? AND currency = ?"))
+        try
         {
-            pstmt.setLong(1, userId);
-            pstmt.setString(2, currency.toUpperCase());
-            pstmt.executeUpdate();
+            connections.write(conn ->
+            {
+                PreparedStatement pstmt = conn.prepare("DELETE FROM user_currencies WHERE user_id = ? AND currency = ?");
+                pstmt.setLong(1, userId);
+                pstmt.setString(2, currency.toUpperCase());
+                return pstmt.executeUpdate();
+            });
         }
         catch (SQLException e)
         {
@@ -214,57 +266,83 @@ public class DatabaseHelper
     public String getCurrencyList(long userId)
     {
         StringBuilder list = new StringBuilder();
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement pstmt = conn.prepareStatement("SELECT currency FROM user_currencies WHERE user_id = ?"))
+        for (String currency : getFavoriteCurrencies(userId))
         {
-            pstmt.setLong(1, userId);
-            ResultSet rs = pstmt.executeQuery();
-            while (rs.next())
+            list.append(currency).append("\n");
+        }
+        return list.toString().isEmpty() ? "Список пуст" : list.toString();
+    }
+
+
+    public List<String> getFavoriteCurrencies(long userId)
+    {
+        try
+        {
+            return connections.read(conn ->
             {
-                list.append(rs.getString("currency")).append("\n");
-            }
+                List<String> currencies = new ArrayList<>();
+                PreparedStatement stmt = conn.prepare("SELECT currency FROM user_currencies WHERE user_id = ?");
+                stmt.setLong(1, userId);
+                try (ResultSet rs = stmt.executeQuery())
+                {
+                    while (rs.next())
+                    {
+                        currencies.add(rs.getString("currency"));
+                    }
+                }
+                return currencies;
+            });
         }
         catch (SQLException e)
         {
             e.printStackTrace();
+            return new ArrayList<>();
         }
-        return list.toString().isEmpty() ? "Список пуст" : list.toString();
     }
 
-
-    public List<String> getFavoriteCurrencies(long userId)
+    // Все валюты, которые есть в избранном, на которые подписаны уведомления или настроены алерты
+    public Set<String> getWatchedCurrencies()
     {
-        List<String> currencies = new ArrayList<>();
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement stmt = conn.prepareStatement("SELECT currency FROM user_currencies WHERE user_id = ?"))
+        try
         {
-            stmt.setLong(1, userId);
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next())
+            return connections.read(conn ->
             {
-                currencies.add(rs.getString("currency"));
-            }
+                Set<String> currencies = new HashSet<>();
+                PreparedStatement stmt = conn.prepare(
+                        "SELECT currency FROM user_currencies UNION SELECT currency FROM notifications " +
+                                "UNION SELECT currency FROM price_alerts");
+                try (ResultSet rs = stmt.executeQuery())
+                {
+                    while (rs.next())
+                    {
+                        currencies.add(rs.getString("currency"));
+                    }
+                }
+                return currencies;
+            });
         }
         catch (SQLException e)
         {
             e.printStackTrace();
+            return new HashSet<>();
         }
-        return currencies;
     }
 
     // --- Новые методы для работы с уведомлениями ---
     public void addNotificationSetting(long userId, String currency, int minutes)
     {
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement stmt = conn.prepareStatement(
-                     "INSERT OR REPLACE INTO notifications (user_id, currency, interval_minutes, last_notification) " +
-                             "VALUES (?, ?, ?, strftime('%s', 'now'))"))
+        try
         {
-
-            stmt.setLong(1, userId);
-            stmt.setString(2, currency);
-            stmt.setInt(3, minutes);
-            stmt.executeUpdate();
+            connections.write(conn ->
+            {
+                PreparedStatement stmt = conn.prepare(
+                        "INSERT OR REPLACE INTO notifications (user_id, currency, interval_minutes, last_notification) " +
+                                "VALUES (?, ?, ?, strftime('%s', 'now'))");
+                stmt.setLong(1, userId);
+                stmt.setString(2, currency);
+                stmt.setInt(3, minutes);
+                return stmt.executeUpdate();
+            });
 
             logger.info("Добавлено уведомление: user={}, currency={}, interval={} мин",
                     userId, currency, minutes);
@@ -277,38 +355,49 @@ public class DatabaseHelper
 
     public List<NotificationSetting> getNotificationSettings(long userId)
     {
-        List<NotificationSetting> settings = new ArrayList<>();
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement stmt = conn.prepareStatement(
-                     "SELECT currency, interval_minutes FROM notifications WHERE user_id = ?"))
+        try
         {
-            stmt.setLong(1, userId);
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next())
+            return connections.read(conn ->
             {
-                settings.add(new NotificationSetting(
-                        rs.getString("currency"),
-                        rs.getInt("interval_minutes")
-                ));
-            }
+                List<NotificationSetting> settings = new ArrayList<>();
+                PreparedStatement stmt = conn.prepare(
+                        "SELECT currency, interval_minutes FROM notifications WHERE user_id = ?");
+                stmt.setLong(1, userId);
+                try (ResultSet rs = stmt.executeQuery())
+                {
+                    while (rs.next())
+                    {
+                        settings.add(new NotificationSetting(
+                                rs.getString("currency"),
+                                rs.getInt("interval_minutes")
+                        ));
+                    }
+                }
+                return settings;
+            });
         }
         catch (SQLException e)
         {
             e.printStackTrace();
+            return new ArrayList<>();
         }
-        return settings;
     }
 
     public boolean isNotificationExists(long userId, String currency)
     {
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement stmt = conn.prepareStatement(
-                     "SELECT 1 FROM notifications WHERE user_id = ? AND currency = ?"))
+        try
         {
-            stmt.setLong(1, userId);
-            stmt.setString(2, currency);
-            ResultSet rs = stmt.executeQuery();
-            return rs.next();
+            return connections.read(conn ->
+            {
+                PreparedStatement stmt = conn.prepare(
+                        "SELECT 1 FROM notifications WHERE user_id = ? AND currency = ?");
+                stmt.setLong(1, userId);
+                stmt.setString(2, currency);
+                try (ResultSet rs = stmt.executeQuery())
+                {
+                    return rs.next();
+                }
+            });
         }
         catch (SQLException e)
         {
@@ -341,13 +430,16 @@ public class DatabaseHelper
 
     public void removeNotificationSetting(long userId, String currency)
     {
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement stmt = conn.prepareStatement(
-                     "DELETE FROM notifications WHERE user_id = ? AND currency = ?"))
+        try
         {
-            stmt.setLong(1, userId);
-            stmt.setString(2, currency);
-            stmt.executeUpdate();
+            connections.write(conn ->
+            {
+                PreparedStatement stmt = conn.prepare(
+                        "DELETE FROM notifications WHERE user_id = ? AND currency = ?");
+                stmt.setLong(1, userId);
+                stmt.setString(2, currency);
+                return stmt.executeUpdate();
+            });
         }
         catch (SQLException e)
         {
@@ -355,52 +447,263 @@ public class DatabaseHelper
         }
     }
 
-    // --- Метод для обновления времени последнего уведомления ---
-    public void updateLastNotificationTime(long userId, String currency)
+    // Уведомление конкретного пользователя вместе со временем последней отправки
+    public static class ScheduledNotification
     {
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement stmt = conn.prepareStatement(
-                     "UPDATE notifications SET last_notification = strftime('%s', 'now') " +
-                             "WHERE user_id = ? AND currency = ?"))
+        private final long userId;
+        private final String currency;
+        private final int intervalMinutes;
+        private final long lastNotification;
+
+        public ScheduledNotification(long userId, String currency, int intervalMinutes, long lastNotification)
+        {
+            this.userId = userId;
+            this.currency = currency;
+            this.intervalMinutes = intervalMinutes;
+            this.lastNotification = lastNotification;
+        }
+
+        public long getUserId()
+        {
+            return userId;
+        }
+
+        public String getCurrency()
+        {
+            return currency;
+        }
+
+        public int getIntervalMinutes()
         {
+            return intervalMinutes;
+        }
 
-            stmt.setLong(1, userId);
-            stmt.setString(2, currency);
-            stmt.executeUpdate();
+        public long getLastNotification()
+        {
+            return lastNotification;
+        }
+    }
 
-            logger.debug("Обновлено время последнего уведомления для {}: {}", userId, currency);
+    // Все подписки на уведомления: загружаются в планировщик при старте
+    public List<ScheduledNotification> getAllNotifications()
+    {
+        try
+        {
+            return connections.read(conn ->
+            {
+                List<ScheduledNotification> notifications = new ArrayList<>();
+                PreparedStatement stmt = conn.prepare(
+                        "SELECT user_id, currency, interval_minutes, last_notification FROM notifications");
+                try (ResultSet rs = stmt.executeQuery())
+                {
+                    while (rs.next())
+                    {
+                        notifications.add(new ScheduledNotification(
+                                rs.getLong("user_id"),
+                                rs.getString("currency"),
+                                rs.getInt("interval_minutes"),
+                                rs.getLong("last_notification")
+                        ));
+                    }
+                }
+                return notifications;
+            });
         }
         catch (SQLException e)
         {
-            logger.error("Ошибка при обновлении времени уведомления", e);
+            logger.error("Ошибка при загрузке уведомлений", e);
+            return new ArrayList<>();
         }
     }
 
-    // --- Метод для получения уведомлений, требующих отправки ---
-    public List<NotificationSetting> getNotificationsToProcess(long currentTimestamp)
+    // Обновление времени последнего уведомления для всей пачки одной транзакцией
+    public void markNotificationsSent(List<ScheduledNotification> notifications, long sentAt)
     {
-        List<NotificationSetting> notifications = new ArrayList<>();
-        try (Connection conn = DriverManager.getConnection(DB_URL);
-             PreparedStatement stmt = conn.prepareStatement(
-                     "SELECT user_id, currency, interval_minutes " +
-                             "FROM notifications " +
-                             "WHERE strftime('%s', 'now') - last_notification >= interval_minutes * 60"))
-        {
-            ResultSet rs = stmt.executeQuery();
+        if (notifications.isEmpty())
+        {
+            return;
+        }
+
+        try
+        {
+            connections.writeInTransaction(conn ->
+            {
+                PreparedStatement stmt = conn.prepare(
+                        "UPDATE notifications SET last_notification = ? WHERE user_id = ? AND currency = ?");
+                for (ScheduledNotification notification : notifications)
+                {
+                    stmt.setLong(1, sentAt);
+                    stmt.setLong(2, notification.getUserId());
+                    stmt.setString(3, notification.getCurrency());
+                    stmt.addBatch();
+                }
+                return stmt.executeBatch();
+            });
+
+            logger.debug("Обновлено время последнего уведомления для {} уведомлений", notifications.size());
+        }
+        catch (SQLException e)
+        {
+            logger.error("Ошибка при обновлении времени уведомлений", e);
+        }
+    }
+
+    // --- Ценовые алерты ---
+    // Созданный алерт с присвоенным id или null при ошибке
+    public PriceAlert addPriceAlert(long userId, String currency, PriceAlert.Type type, double threshold, int windowMinutes)
+    {
+        try
+        {
+            long id = connections.write(conn ->
+            {
+                PreparedStatement stmt = conn.prepare(
+                        "INSERT INTO price_alerts (user_id, currency, type, threshold, window_minutes, created_at) " +
+                                "VALUES (?, ?, ?, ?, ?, strftime('%s', 'now'))");
+                stmt.setLong(1, userId);
+                stmt.setString(2, currency);
+                stmt.setString(3, type.name());
+                stmt.setDouble(4, threshold);
+                stmt.setInt(5, windowMinutes);
+                stmt.executeUpdate();
+
+                try (ResultSet rs = conn.prepare("SELECT last_insert_rowid()").executeQuery())
+                {
+                    rs.next();
+                    return rs.getLong(1);
+                }
+            });
+
+            logger.info("Добавлен алерт {}: user={}, currency={}, type={}, threshold={}, window={} мин",
+                    id, userId, currency, type, threshold, windowMinutes);
+            return new PriceAlert(id, userId, currency, type, threshold, windowMinutes);
+        }
+        catch (SQLException e)
+        {
+            logger.error("Ошибка при добавлении алерта", e);
+            return null;
+        }
+    }
+
+    public List<PriceAlert> getPriceAlerts(long userId)
+    {
+        try
+        {
+            return connections.read(conn ->
+            {
+                PreparedStatement stmt = conn.prepare(
+                        "SELECT id, user_id, currency, type, threshold, window_minutes FROM price_alerts " +
+                                "WHERE user_id = ? ORDER BY id");
+                stmt.setLong(1, userId);
+                return readPriceAlerts(stmt);
+            });
+        }
+        catch (SQLException e)
+        {
+            logger.error("Ошибка при получении алертов пользователя {}", userId, e);
+            return new ArrayList<>();
+        }
+    }
+
+    // Все алерты: загружаются в AlertEngine при старте
+    public List<PriceAlert> getAllPriceAlerts()
+    {
+        try
+        {
+            return connections.read(conn -> readPriceAlerts(conn.prepare(
+                    "SELECT id, user_id, currency, type, threshold, window_minutes FROM price_alerts")));
+        }
+        catch (SQLException e)
+        {
+            logger.error("Ошибка при загрузке алертов", e);
+            return new ArrayList<>();
+        }
+    }
+
+    private static List<PriceAlert> readPriceAlerts(PreparedStatement stmt) throws SQLException
+    {
+        List<PriceAlert> alerts = new ArrayList<>();
+        try (ResultSet rs = stmt.executeQuery())
+        {
             while (rs.next())
             {
-                notifications.add(new NotificationSetting(
+                alerts.add(new PriceAlert(
+                        rs.getLong("id"),
+                        rs.getLong("user_id"),
                         rs.getString("currency"),
-                        rs.getInt("interval_minutes")
+                        PriceAlert.Type.valueOf(rs.getString("type")),
+                        rs.getDouble("threshold"),
+                        rs.getInt("window_minutes")
                 ));
-                // Здесь нужно добавить информацию о user_id, но это требует изменения класса NotificationSetting
-                // Либо использовать другой подход для возврата user_id
             }
         }
+        return alerts;
+    }
+
+    public int countPriceAlerts(long userId)
+    {
+        try
+        {
+            return connections.read(conn ->
+            {
+                PreparedStatement stmt = conn.prepare("SELECT COUNT(*) FROM price_alerts WHERE user_id = ?");
+                stmt.setLong(1, userId);
+                try (ResultSet rs = stmt.executeQuery())
+                {
+                    return rs.next() ? rs.getInt(1) : 0;
+                }
+            });
+        }
         catch (SQLException e)
         {
-            e.printStackTrace();
+            logger.error("Ошибка при подсчете алертов пользователя {}", userId, e);
+            return 0;
+        }
+    }
+
+    // Удаление алерта пользователем; false, если алерта нет или он чужой
+    public boolean removePriceAlert(long userId, long alertId)
+    {
+        try
+        {
+            return connections.write(conn ->
+            {
+                PreparedStatement stmt = conn.prepare("DELETE FROM price_alerts WHERE id = ? AND user_id = ?");
+                stmt.setLong(1, alertId);
+                stmt.setLong(2, userId);
+                return stmt.executeUpdate() > 0;
+            });
+        }
+        catch (SQLException e)
+        {
+            logger.error("Ошибка при удалении алерта {}", alertId, e);
+            return false;
+        }
+    }
+
+    // Удаление сработавших алертов одной транзакцией
+    public void removePriceAlerts(Collection<Long> alertIds)
+    {
+        if (alertIds.isEmpty())
+        {
+            return;
+        }
+
+        try
+        {
+            connections.writeInTransaction(conn ->
+            {
+                PreparedStatement stmt = conn.prepare("DELETE FROM price_alerts WHERE id = ?");
+                for (long alertId : alertIds)
+                {
+                    stmt.setLong(1, alertId);
+                    stmt.addBatch();
+                }
+                return stmt.executeBatch();
+            });
+        }
+        catch (SQLException e)
+        {
+            logger.error("Ошибка при удалении сработавших алертов", e);
         }
-        return notifications;
     }
 }
@@ -0,0 +1,153 @@
+package org.example.cryptobot;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+
+// Потоковый разбор ответов histoday/histohour/histominute.
+// Свечи читаются из потока прямо в массивы примитивов HistoricalSeries, без построения дерева JSON
+// и без промежуточных строк: для histominute с limit=2000 это несколько мегабайт мусора на вызов.
+public final class HistoResponseParser
+{
+    private HistoResponseParser()
+    {
+    }
+
+    // expectedSize - ожидаемое число свечей (limit + 1), чтобы массивы не пришлось расширять
+    public static HistoricalSeries parse(Reader source, int expectedSize) throws IOException
+    {
+        HistoricalSeries series = null;
+        String status = null;
+        String message = null;
+
+        try (JsonReader reader = new JsonReader(source))
+        {
+            reader.beginObject();
+            while (reader.hasNext())
+            {
+                switch (reader.nextName())
+                {
+                    case "Response":
+                        status = nextString(reader);
+                        break;
+                    case "Message":
+                        message = nextString(reader);
+                        break;
+                    case "Data":
+                        if (reader.peek() == JsonToken.BEGIN_OBJECT)
+                        {
+                            series = readData(reader, expectedSize);
+                        }
+                        else
+                        {
+                            reader.skipValue();
+                        }
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+
+        // Проверка на наличие ошибки в ответе
+        if ("Error".equals(status))
+        {
+            throw new IOException("API error: " + message);
+        }
+        if (series == null)
+        {
+            throw new IOException("Unexpected API response structure: Response=" + status + ", Message=" + message);
+        }
+        return series;
+    }
+
+    // Объект Data: {"Aggregated":..., "TimeFrom":..., "TimeTo":..., "Data":[...]}
+    private static HistoricalSeries readData(JsonReader reader, int expectedSize) throws IOException
+    {
+        HistoricalSeries series = null;
+        reader.beginObject();
+        while (reader.hasNext())
+        {
+            if ("Data".equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_ARRAY)
+            {
+                HistoricalSeries.Builder builder = new HistoricalSeries.Builder(expectedSize);
+                reader.beginArray();
+                while (reader.hasNext())
+                {
+                    readCandle(reader, builder);
+                }
+                reader.endArray();
+                series = builder.build();
+            }
+            else
+            {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return series;
+    }
+
+    private static void readCandle(JsonReader reader, HistoricalSeries.Builder builder) throws IOException
+    {
+        long time = 0;
+        double open = 0;
+        double high = 0;
+        double low = 0;
+        double close = 0;
+        double volume = 0;
+
+        reader.beginObject();
+        while (reader.hasNext())
+        {
+            switch (reader.nextName())
+            {
+                case "time":
+                    time = reader.nextLong();
+                    break;
+                case "open":
+                    open = nextDouble(reader);
+                    break;
+                case "high":
+                    high = nextDouble(reader);
+                    break;
+                case "low":
+                    low = nextDouble(reader);
+                    break;
+                case "close":
+                    close = nextDouble(reader);
+                    break;
+                case "volumefrom":
+                    volume = nextDouble(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        builder.add(time, open, high, low, close, volume);
+    }
+
+    private static double nextDouble(JsonReader reader) throws IOException
+    {
+        if (reader.peek() == JsonToken.NULL)
+        {
+            reader.nextNull();
+            return 0;
+        }
+        return reader.nextDouble();
+    }
+
+    private static String nextString(JsonReader reader) throws IOException
+    {
+        if (reader.peek() == JsonToken.NULL)
+        {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+}
@@ -0,0 +1,249 @@
+package org.example.cryptobot;
+
+import java.util.Arrays;
+
+// Исторический ряд свечей OHLCV в виде параллельных массивов примитивов.
+// Ряд неизменяемый: срезы (slice/tail) разделяют массивы исходного ряда и ничего не копируют,
+// поэтому один загруженный ряд можно отдавать из кэша любым количеством срезов.
+public final class HistoricalSeries
+{
+    private static final HistoricalSeries EMPTY =
+            new HistoricalSeries(new long[0], new double[0], new double[0], new double[0], new double[0], new double[0], 0, 0);
+
+    private final long[] time;
+    private final double[] open;
+    private final double[] high;
+    private final double[] low;
+    private final double[] close;
+    private final double[] volume;
+    private final int offset;
+    private final int length;
+
+    private HistoricalSeries(long[] time, double[] open, double[] high, double[] low, double[] close, double[] volume,
+                             int offset, int length)
+    {
+        this.time = time;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+        this.volume = volume;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public static HistoricalSeries empty()
+    {
+        return EMPTY;
+    }
+
+    public int size()
+    {
+        return length;
+    }
+
+    public boolean isEmpty()
+    {
+        return length == 0;
+    }
+
+    // Время начала свечи в секундах
+    public long getTime(int index)
+    {
+        return time[offset + checkIndex(index)];
+    }
+
+    public double getOpen(int index)
+    {
+        return open[offset + checkIndex(index)];
+    }
+
+    public double getHigh(int index)
+    {
+        return high[offset + checkIndex(index)];
+    }
+
+    public double getLow(int index)
+    {
+        return low[offset + checkIndex(index)];
+    }
+
+    public double getClose(int index)
+    {
+        return close[offset + checkIndex(index)];
+    }
+
+    public double getVolume(int index)
+    {
+        return volume[offset + checkIndex(index)];
+    }
+
+    // Время последней свечи ряда
+    public long getLastTime()
+    {
+        return getTime(length - 1);
+    }
+
+    // Срез [from, to) без копирования данных
+    public HistoricalSeries slice(int from, int to)
+    {
+        if (from < 0 || to > length || from > to)
+        {
+            throw new IndexOutOfBoundsException("slice(" + from + ", " + to + ") для ряда длины " + length);
+        }
+        if (from == 0 && to == length)
+        {
+            return this;
+        }
+        return new HistoricalSeries(time, open, high, low, close, volume, offset + from, to - from);
+    }
+
+    // Последние count свечей (или весь ряд, если он короче)
+    public HistoricalSeries tail(int count)
+    {
+        return slice(Math.max(0, length - count), length);
+    }
+
+    // Курсор для последовательного обхода без создания объекта на каждую свечу
+    public Cursor cursor()
+    {
+        return new Cursor();
+    }
+
+    public final class Cursor
+    {
+        private int position = offset - 1;
+
+        private Cursor()
+        {
+        }
+
+        public boolean next()
+        {
+            if (position + 1 >= offset + length)
+            {
+                return false;
+            }
+            position++;
+            return true;
+        }
+
+        public int index()
+        {
+            return position - offset;
+        }
+
+        public long time()
+        {
+            return time[position];
+        }
+
+        public double open()
+        {
+            return open[position];
+        }
+
+        public double high()
+        {
+            return high[position];
+        }
+
+        public double low()
+        {
+            return low[position];
+        }
+
+        public double close()
+        {
+            return close[position];
+        }
+
+        public double volume()
+        {
+            return volume[position];
+        }
+    }
+
+    private int checkIndex(int index)
+    {
+        if (index < 0 || index >= length)
+        {
+            throw new IndexOutOfBoundsException("Индекс " + index + " для ряда длины " + length);
+        }
+        return index;
+    }
+
+    // Построение ряда: массивы растут по мере добавления и передаются ряду без копирования
+    public static final class Builder
+    {
+        private long[] time;
+        private double[] open;
+        private double[] high;
+        private double[] low;
+        private double[] close;
+        private double[] volume;
+        private int size;
+
+        public Builder(int expectedSize)
+        {
+            int capacity = Math.max(1, expectedSize);
+            time = new long[capacity];
+            open = new double[capacity];
+            high = new double[capacity];
+            low = new double[capacity];
+            close = new double[capacity];
+            volume = new double[capacity];
+        }
+
+        public Builder add(long candleTime, double candleOpen, double candleHigh, double candleLow,
+                           double candleClose, double candleVolume)
+        {
+            if (time == null)
+            {
+                throw new IllegalStateException("Ряд уже построен");
+            }
+            if (size == time.length)
+            {
+                int capacity = time.length * 2;
+                time = Arrays.copyOf(time, capacity);
+                open = Arrays.copyOf(open, capacity);
+                high = Arrays.copyOf(high, capacity);
+                low = Arrays.copyOf(low, capacity);
+                close = Arrays.copyOf(close, capacity);
+                volume = Arrays.copyOf(volume, capacity);
+            }
+            time[size] = candleTime;
+            open[size] = candleOpen;
+            high[size] = candleHigh;
+            low[size] = candleLow;
+            close[size] = candleClose;
+            volume[size] = candleVolume;
+            size++;
+            return this;
+        }
+
+        public int size()
+        {
+            return size;
+        }
+
+        // После build() билдер использовать нельзя: массивы принадлежат ряду
+        public HistoricalSeries build()
+        {
+            if (time == null)
+            {
+                throw new IllegalStateException("Ряд уже построен");
+            }
+            HistoricalSeries series = size == 0
+                    ? EMPTY
+                    : new HistoricalSeries(time, open, high, low, close, volume, 0, size);
+            time = null;
+            open = null;
+            high = null;
+            low = null;
+            close = null;
+            volume = null;
+            return series;
+        }
+    }
+}
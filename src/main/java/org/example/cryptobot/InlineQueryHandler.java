@@ -0,0 +1,244 @@
+package org.example.cryptobot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.methods.AnswerInlineQuery;
+import org.telegram.telegrambots.meta.api.objects.inlinequery.InlineQuery;
+import org.telegram.telegrambots.meta.api.objects.inlinequery.inputmessagecontent.InputTextMessageContent;
+import org.telegram.telegrambots.meta.api.objects.inlinequery.result.InlineQueryResult;
+import org.telegram.telegrambots.meta.api.objects.inlinequery.result.InlineQueryResultArticle;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Inline-режим: "@bot btc eth" в любом чате сразу показывает курсы, без сообщений и кнопок бота.
+// Цены берутся с табло потока котировок и из кэша; запрос к API нужен только для валют, которых там нет.
+// Запросы обрабатываются отдельным пулом, а не очередью чата: Telegram показывает ответ только
+// на последний запрос пользователя, поэтому порядок не важен, а устаревшие запросы отбрасываются.
+public class InlineQueryHandler
+{
+    private static final Logger logger = LoggerFactory.getLogger(InlineQueryHandler.class);
+
+    private static final int WORKER_COUNT = 4;
+    private static final int QUEUE_CAPACITY = 256;
+    private static final int MAX_SYMBOLS = 10;
+    // Пока цены не пришли, ответа нет; дольше ждать нет смысла - пользователь уже печатает дальше
+    private static final long PRICE_TIMEOUT_MILLIS = 2000;
+    // Курсы меняются постоянно, поэтому Telegram кэширует ответ недолго
+    private static final int CACHE_TIME_SECONDS = 5;
+    private static final int LATENCY_WINDOW_SIZE = 1024;
+
+    @FunctionalInterface
+    public interface Sender
+    {
+        void answer(AnswerInlineQuery answer) throws TelegramApiException;
+    }
+
+    private final CryptoApiService apiService;
+    private final DatabaseHelper dbHelper;
+    private final Sender sender;
+    private final List<String> defaultCurrencies;
+    private final ThreadPoolExecutor executor;
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder answered = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    // Получение запроса -> ответ готов (наша часть) и получение -> ответ принят Telegram
+    private final LatencyWindow prepareLatency = new LatencyWindow(LATENCY_WINDOW_SIZE);
+    private final LatencyWindow answerLatency = new LatencyWindow(LATENCY_WINDOW_SIZE);
+
+    public InlineQueryHandler(CryptoApiService apiService, DatabaseHelper dbHelper, Sender sender,
+                              List<String> defaultCurrencies)
+    {
+        this.apiService = apiService;
+        this.dbHelper = dbHelper;
+        this.sender = sender;
+        this.defaultCurrencies = defaultCurrencies;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        // При переполнении вытесняется самый старый запрос: на него все равно уже пришел более новый
+        RejectedExecutionHandler discardOldest = new ThreadPoolExecutor.DiscardOldestPolicy();
+        this.executor = new ThreadPoolExecutor(WORKER_COUNT, WORKER_COUNT, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), runnable ->
+        {
+            Thread thread = new Thread(runnable, "inline-query-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, (runnable, pool) ->
+        {
+            dropped.increment();
+            discardOldest.rejectedExecution(runnable, pool);
+        });
+    }
+
+    // Вызывается из потока получения обновлений; время получения фиксируется здесь
+    public void submit(InlineQuery query)
+    {
+        long receivedAt = System.nanoTime();
+        received.increment();
+        executor.execute(() -> handle(query, receivedAt));
+    }
+
+    private void handle(InlineQuery query, long receivedAt)
+    {
+        long userId = query.getFrom().getId();
+        boolean personal = query.getQuery() == null || query.getQuery().isBlank();
+        List<String> symbols = personal ? userCurrencies(userId) : parseSymbols(query.getQuery());
+
+        Map<String, PriceQuote> quotes;
+        try
+        {
+            // Набор текста в inline-режиме не делает валюты востребованными: их фоновое обновление
+            // задают подписки, избранное и алерты
+            quotes = apiService.lookupQuotesAsync(symbols).get(PRICE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        catch (TimeoutException e)
+        {
+            // Загрузка цен продолжается в фоне, и повтор запроса ответится уже из кэша
+            timedOut.increment();
+            quotes = Collections.emptyMap();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        catch (Exception e)
+        {
+            logger.warn("Не удалось получить цены для inline-запроса {}: {}", symbols, e.getMessage());
+            quotes = Collections.emptyMap();
+        }
+
+        AnswerInlineQuery answer = new AnswerInlineQuery();
+        answer.setInlineQueryId(query.getId());
+        answer.setResults(buildResults(symbols, quotes));
+        // Пустой ответ не кэшируем: следующий запрос, скорее всего, получит цены из кэша
+        answer.setCacheTime(quotes.isEmpty() ? 0 : CACHE_TIME_SECONDS);
+        answer.setIsPersonal(personal);
+        long prepareMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - receivedAt);
+        prepareLatency.record(prepareMillis);
+
+        try
+        {
+            sender.answer(answer);
+            answered.increment();
+        }
+        catch (TelegramApiException e)
+        {
+            // Обычно запрос устарел: пользователь продолжил ввод, и Telegram ждет ответ на новый
+            failed.increment();
+            logger.debug("Не удалось ответить на inline-запрос {}: {}", query.getId(), e.getMessage());
+            return;
+        }
+        long answerMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - receivedAt);
+        answerLatency.record(answerMillis);
+        logger.debug("Inline-запрос \"{}\": {} из {} валют, ответ готов за {} мс, отправлен за {} мс",
+                query.getQuery(), quotes.size(), symbols.size(), prepareMillis, answerMillis);
+    }
+
+    // Пустой запрос показывает избранное пользователя, а без избранного - популярные валюты
+    private List<String> userCurrencies(long userId)
+    {
+        List<String> favorites = dbHelper.getFavoriteCurrencies(userId);
+        List<String> symbols = favorites.isEmpty() ? defaultCurrencies : favorites;
+        return symbols.size() > MAX_SYMBOLS ? symbols.subList(0, MAX_SYMBOLS) : symbols;
+    }
+
+    // "btc eth", "btc,eth", "bitcoin": каждое слово - символ или название валюты.
+    // Слова, которым не соответствует ни одна известная валюта, пропускаются
+    private List<String> parseSymbols(String text)
+    {
+        Set<String> symbols = new LinkedHashSet<>();
+        for (String token : text.trim().split("[\\s,;]+"))
+        {
+            if (token.isEmpty())
+            {
+                continue;
+            }
+            // Лучшее совпадение из справочника: точный символ, название или символ с опечаткой
+            List<String> matches = apiService.suggestSymbols(token, 1);
+            String symbol = matches.isEmpty() ? knownSymbol(token.toUpperCase()) : matches.get(0);
+            if (symbol == null)
+            {
+                continue;
+            }
+            symbols.add(symbol);
+            if (symbols.size() == MAX_SYMBOLS)
+            {
+                break;
+            }
+        }
+        return new ArrayList<>(symbols);
+    }
+
+    // Символ, которого нет среди подсказок (например, справочник еще не загружен); null, если валюты нет
+    private String knownSymbol(String symbol)
+    {
+        try
+        {
+            return apiService.isCurrencyValid(symbol) ? symbol : null;
+        }
+        catch (IOException e)
+        {
+            logger.debug("Не удалось проверить валюту {} для inline-запроса: {}", symbol, e.getMessage());
+            return null;
+        }
+    }
+
+    private List<InlineQueryResult> buildResults(List<String> symbols, Map<String, PriceQuote> quotes)
+    {
+        List<InlineQueryResult> results = new ArrayList<>();
+        StringBuilder all = new StringBuilder();
+        for (String symbol : symbols)
+        {
+            PriceQuote quote = quotes.get(symbol);
+            if (quote == null)
+            {
+                continue;
+            }
+            String text = "Курс " + symbol + ": " + CryptoBot.formatQuote(quote);
+            all.append(text).append("\n");
+
+            String name = apiService.getSymbolName(symbol);
+            results.add(article("price:" + symbol, symbol + " — " + CryptoBot.formatQuote(quote),
+                    name != null ? name : "Отправить курс " + symbol, text));
+        }
+
+        // Несколько валют можно отправить одним сообщением
+        if (results.size() > 1)
+        {
+            String listed = String.join(", ", quotes.keySet());
+            results.add(0, article("all", "Все курсы: " + listed, "Отправить одним сообщением", all.toString().trim()));
+        }
+        return results;
+    }
+
+    private static InlineQueryResultArticle article(String id, String title, String description, String text)
+    {
+        InlineQueryResultArticle article = new InlineQueryResultArticle();
+        article.setId(id);
+        article.setTitle(title);
+        article.setDescription(description);
+        article.setInputMessageContent(new InputTextMessageContent(text));
+        return article;
+    }
+
+    public String getStats()
+    {
+        return String.format("inline: запросов %d, ответов %d, без цен по таймауту %d, ошибок %d, отброшено %d, " +
+                        "готов p50 %d мс / p95 %d мс, отправлен p50 %d мс / p95 %d мс",
+                received.sum(), answered.sum(), timedOut.sum(), failed.sum(), dropped.sum(),
+                prepareLatency.percentile(0.5), prepareLatency.percentile(0.95),
+                answerLatency.percentile(0.5), answerLatency.percentile(0.95));
+    }
+}
@@ -0,0 +1,53 @@
+package org.example.cryptobot;
+
+import java.util.Arrays;
+
+// Скользящее окно последних измерений задержки для оценки перцентилей.
+// Окно небольшое, поэтому перцентиль считается сортировкой копии без отдельной структуры.
+public class LatencyWindow
+{
+    private final long[] samples;
+    private int next;
+    private int count;
+
+    public LatencyWindow(int capacity)
+    {
+        if (capacity <= 0)
+        {
+            throw new IllegalArgumentException("Размер окна должен быть положительным: " + capacity);
+        }
+        samples = new long[capacity];
+    }
+
+    public synchronized void record(long millis)
+    {
+        samples[next] = millis;
+        next = (next + 1) % samples.length;
+        if (count < samples.length)
+        {
+            count++;
+        }
+    }
+
+    public synchronized int size()
+    {
+        return count;
+    }
+
+    // Перцентиль (0 < percentile <= 1) по окну; -1, если измерений еще нет
+    public long percentile(double percentile)
+    {
+        long[] copy;
+        synchronized (this)
+        {
+            if (count == 0)
+            {
+                return -1;
+            }
+            copy = Arrays.copyOf(samples, count);
+        }
+        Arrays.sort(copy);
+        int index = (int) Math.ceil(percentile * copy.length) - 1;
+        return copy[Math.max(0, Math.min(copy.length - 1, index))];
+    }
+}
@@ -1,22 +1,66 @@
 package org.example.cryptobot;
 
 import org.telegram.telegrambots.meta.TelegramBotsApi;
+import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
 
+import java.io.IOException;
+
 public class Main
 {
+    private static final String WEBHOOK_PATH = "/webhook";
+
     public static void main(String[] args)
     {
+        // Графики рисуются через Java2D без графического окружения
+        System.setProperty("java.awt.headless", "true");
+
+        // BOT_MODE=webhook включает прием обновлений через webhook, по умолчанию - long polling
+        String mode = System.getenv("BOT_MODE");
         try
         {
-            // Используем DefaultBotSession как параметр
-            TelegramBotsApi botsApi = new TelegramBotsApi(DefaultBotSession.class);
-            botsApi.registerBot(new CryptoBot());
+            if ("webhook".equalsIgnoreCase(mode))
+            {
+                startWebhook(new CryptoBot());
+            }
+            else
+            {
+                // Используем DefaultBotSession как параметр
+                TelegramBotsApi botsApi = new TelegramBotsApi(DefaultBotSession.class);
+                botsApi.registerBot(new CryptoBot());
+            }
         }
-        catch (TelegramApiException e)
+        catch (TelegramApiException | IOException e)
         {
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+
+    // Webhook: WEBHOOK_URL - внешний адрес бота (https://host), WEBHOOK_PORT - локальный порт,
+    // WEBHOOK_SECRET - секрет, который Telegram передает в каждом запросе
+    private static void startWebhook(CryptoBot bot) throws TelegramApiException, IOException
+    {
+        String url = System.getenv("WEBHOOK_URL");
+        if (url == null || url.isEmpty())
+        {
+            throw new IllegalStateException("Для режима webhook нужна переменная окружения WEBHOOK_URL");
+        }
+        String portValue = System.getenv("WEBHOOK_PORT");
+        int port = portValue != null && !portValue.isEmpty() ? Integer.parseInt(portValue) : 8080;
+        String secret = System.getenv("WEBHOOK_SECRET");
+
+        WebhookServer server = new WebhookServer(port, WEBHOOK_PATH, secret, bot::offerUpdate);
+        server.start();
+        bot.setWebhookServer(server);
+
+        SetWebhook setWebhook = new SetWebhook();
+        setWebhook.setUrl(url.replaceAll("/+$", "") + WEBHOOK_PATH);
+        if (secret != null && !secret.isEmpty())
+        {
+            setWebhook.setSecretToken(secret);
+        }
+        bot.execute(setWebhook);
+        CryptoBot.logger.info("Webhook зарегистрирован: {}", setWebhook.getUrl());
+    }
+}
@@ -0,0 +1,223 @@
+package org.example.cryptobot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Очередь исходящих сообщений с несколькими потоками отправки и ограничением частоты:
+// общий лимит Telegram (~30 сообщений в секунду) и лимит на один чат (~1 сообщение в секунду).
+// Сообщение, для чата которого лимит исчерпан, откладывается, а не занимает поток отправки.
+public class MessageDispatcher
+{
+    private static final Logger logger = LoggerFactory.getLogger(MessageDispatcher.class);
+
+    private static final int QUEUE_CAPACITY = 10_000;
+    private static final int WORKER_COUNT = 4;
+    private static final double GLOBAL_MESSAGES_PER_SECOND = 30;
+    private static final double CHAT_MESSAGES_PER_SECOND = 1;
+    private static final int MAX_ATTEMPTS = 3;
+    // Неиспользуемые ведра чатов удаляются после каждых N отправленных сообщений
+    private static final int CHAT_BUCKET_SWEEP_EVERY = 1000;
+
+    @FunctionalInterface
+    public interface Sender
+    {
+        void send(SendMessage message) throws TelegramApiException;
+    }
+
+    private static class Outbound implements Delayed
+    {
+        private final long chatId;
+        private final SendMessage message;
+        private final long enqueuedAtNanos;
+        private long notBeforeNanos;
+        private int attempts;
+
+        Outbound(long chatId, SendMessage message)
+        {
+            this.chatId = chatId;
+            this.message = message;
+            this.enqueuedAtNanos = System.nanoTime();
+            this.notBeforeNanos = enqueuedAtNanos;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit)
+        {
+            return unit.convert(notBeforeNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other)
+        {
+            return Long.compare(notBeforeNanos, ((Outbound) other).notBeforeNanos);
+        }
+    }
+
+    private final Sender sender;
+    private final DelayQueue<Outbound> queue = new DelayQueue<>();
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final TokenBucket globalBucket = new TokenBucket(GLOBAL_MESSAGES_PER_SECOND, GLOBAL_MESSAGES_PER_SECOND);
+    private final Map<Long, TokenBucket> chatBuckets = new ConcurrentHashMap<>();
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder totalDeliveryNanos = new LongAdder();
+    private final LongAdder totalSendNanos = new LongAdder();
+    private final AtomicLong maxDeliveryNanos = new AtomicLong();
+
+    public MessageDispatcher(Sender sender)
+    {
+        this.sender = sender;
+        for (int i = 0; i < WORKER_COUNT; i++)
+        {
+            Thread worker = new Thread(this::runWorker, "message-dispatcher-" + i);
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    // Ставит сообщение в очередь; false, если очередь переполнена и сообщение отброшено
+    public boolean submit(SendMessage message)
+    {
+        if (queueDepth.incrementAndGet() > QUEUE_CAPACITY)
+        {
+            queueDepth.decrementAndGet();
+            dropped.increment();
+            logger.warn("Очередь исходящих сообщений переполнена, сообщение для {} отброшено", message.getChatId());
+            return false;
+        }
+        queue.add(new Outbound(Long.parseLong(message.getChatId()), message));
+        return true;
+    }
+
+    public int getQueueDepth()
+    {
+        return queueDepth.get();
+    }
+
+    private void runWorker()
+    {
+        while (!Thread.currentThread().isInterrupted())
+        {
+            Outbound outbound;
+            try
+            {
+                outbound = queue.take();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            // Лимит чата исчерпан: откладываем сообщение до появления токена
+            long chatWait = chatBuckets
+                    .computeIfAbsent(outbound.chatId, id -> new TokenBucket(1, CHAT_MESSAGES_PER_SECOND))
+                    .tryAcquire();
+            if (chatWait > 0)
+            {
+                outbound.notBeforeNanos = System.nanoTime() + chatWait;
+                queue.add(outbound);
+                continue;
+            }
+
+            try
+            {
+                globalBucket.acquire();
+                deliver(outbound);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void deliver(Outbound outbound)
+    {
+        outbound.attempts++;
+        long startTime = System.nanoTime();
+        try
+        {
+            sender.send(outbound.message);
+
+            long now = System.nanoTime();
+            totalSendNanos.add(now - startTime);
+            recordDelivery(now - outbound.enqueuedAtNanos);
+            sent.increment();
+            queueDepth.decrementAndGet();
+
+            if (sent.sum() % CHAT_BUCKET_SWEEP_EVERY == 0)
+            {
+                chatBuckets.values().removeIf(TokenBucket::isIdle);
+                logger.info("Исходящие сообщения: {}", getStats());
+            }
+        }
+        catch (TelegramApiException e)
+        {
+            long retryAfterSeconds = getRetryAfterSeconds(e);
+            if (retryAfterSeconds > 0 && outbound.attempts < MAX_ATTEMPTS)
+            {
+                // 429 Too Many Requests: повторяем после указанной Telegram паузы
+                retried.increment();
+                logger.warn("Telegram ограничил частоту отправки, повтор через {} с для {}",
+                        retryAfterSeconds, outbound.chatId);
+                outbound.notBeforeNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(retryAfterSeconds);
+                queue.add(outbound);
+                return;
+            }
+
+            failed.increment();
+            queueDepth.decrementAndGet();
+            logger.error("Ошибка при отправке сообщения пользователю {}", outbound.chatId, e);
+        }
+    }
+
+    private static long getRetryAfterSeconds(TelegramApiException e)
+    {
+        if (e instanceof TelegramApiRequestException)
+        {
+            TelegramApiRequestException requestException = (TelegramApiRequestException) e;
+            if (requestException.getErrorCode() != null && requestException.getErrorCode() == 429)
+            {
+                Integer retryAfter = requestException.getParameters() != null
+                        ? requestException.getParameters().getRetryAfter()
+                        : null;
+                return retryAfter != null ? retryAfter : 1;
+            }
+        }
+        return 0;
+    }
+
+    private void recordDelivery(long deliveryNanos)
+    {
+        totalDeliveryNanos.add(deliveryNanos);
+        maxDeliveryNanos.accumulateAndGet(deliveryNanos, Math::max);
+    }
+
+    public String getStats()
+    {
+        long sentCount = sent.sum();
+        double avgDeliveryMs = sentCount == 0 ? 0 : totalDeliveryNanos.sum() / 1_000_000.0 / sentCount;
+        double avgSendMs = sentCount == 0 ? 0 : totalSendNanos.sum() / 1_000_000.0 / sentCount;
+        return String.format("queue=%d, sent=%d, failed=%d, retried=%d, dropped=%d, " +
+                        "avgDelivery=%.1fms, maxDelivery=%.1fms, avgSend=%.1fms",
+                queueDepth.get(), sentCount, failed.sum(), retried.sum(), dropped.sum(),
+                avgDeliveryMs, maxDeliveryNanos.get() / 1_000_000.0, avgSendMs);
+    }
+}
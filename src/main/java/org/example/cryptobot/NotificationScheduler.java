@@ -0,0 +1,253 @@
+package org.example.cryptobot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Планировщик уведомлений на куче (min-heap) по времени следующей отправки.
+// Поток спит ровно до ближайшего уведомления, а за один проход обрабатывает только
+// наступившие уведомления, не просматривая все подписки.
+public class NotificationScheduler
+{
+    private static final Logger logger = LoggerFactory.getLogger(NotificationScheduler.class);
+
+    // Обработчик наступивших уведомлений; вызывается вне блокировки планировщика
+    @FunctionalInterface
+    public interface DueHandler
+    {
+        void onDue(List<DatabaseHelper.ScheduledNotification> due, long firedAtSeconds);
+    }
+
+    private static class Entry
+    {
+        private final long userId;
+        private final String currency;
+        private final int intervalMinutes;
+        private final long dueAtMillis;
+        private boolean cancelled;
+
+        Entry(long userId, String currency, int intervalMinutes, long dueAtMillis)
+        {
+            this.userId = userId;
+            this.currency = currency;
+            this.intervalMinutes = intervalMinutes;
+            this.dueAtMillis = dueAtMillis;
+        }
+    }
+
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>(Comparator.comparingLong(entry -> entry.dueAtMillis));
+    // Актуальная запись для каждой пары пользователь/валюта; отмененные записи удаляются из кучи лениво
+    private final Map<String, Entry> active = new HashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final DueHandler handler;
+    private Thread worker;
+
+    public NotificationScheduler(DueHandler handler)
+    {
+        this.handler = handler;
+    }
+
+    // Загрузка всех подписок при старте
+    public void load(List<DatabaseHelper.ScheduledNotification> notifications)
+    {
+        for (DatabaseHelper.ScheduledNotification notification : notifications)
+        {
+            schedule(notification.getUserId(), notification.getCurrency(),
+                    notification.getIntervalMinutes(), notification.getLastNotification());
+        }
+        logger.info("Загружено {} подписок на уведомления", notifications.size());
+    }
+
+    // Добавление или замена подписки; следующее уведомление через интервал после последнего
+    public void schedule(long userId, String currency, int intervalMinutes, long lastNotificationSeconds)
+    {
+        long dueAt = TimeUnit.SECONDS.toMillis(lastNotificationSeconds) + TimeUnit.MINUTES.toMillis(intervalMinutes);
+        lock.lock();
+        try
+        {
+            Entry previous = active.remove(key(userId, currency));
+            if (previous != null)
+            {
+                previous.cancelled = true;
+            }
+            push(new Entry(userId, currency, intervalMinutes, dueAt));
+            changed.signal();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    // Повтор уведомления, которое не удалось отправить, через delayMillis вместо полного интервала.
+    // Если подписку за это время отменили или изменили, повтор не нужен
+    public void retry(DatabaseHelper.ScheduledNotification notification, long delayMillis)
+    {
+        lock.lock();
+        try
+        {
+            String key = key(notification.getUserId(), notification.getCurrency());
+            Entry current = active.get(key);
+            if (current == null || current.intervalMinutes != notification.getIntervalMinutes())
+            {
+                return;
+            }
+            current.cancelled = true;
+            push(new Entry(current.userId, current.currency, current.intervalMinutes,
+                    System.currentTimeMillis() + delayMillis));
+            changed.signal();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    public void cancel(long userId, String currency)
+    {
+        lock.lock();
+        try
+        {
+            Entry previous = active.remove(key(userId, currency));
+            if (previous != null)
+            {
+                previous.cancelled = true;
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    public int size()
+    {
+        lock.lock();
+        try
+        {
+            return active.size();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    public synchronized void start()
+    {
+        if (worker != null)
+        {
+            return;
+        }
+        worker = new Thread(this::run, "notification-scheduler");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public synchronized void stop()
+    {
+        if (worker != null)
+        {
+            worker.interrupt();
+            worker = null;
+        }
+    }
+
+    private void run()
+    {
+        while (!Thread.currentThread().isInterrupted())
+        {
+            List<DatabaseHelper.ScheduledNotification> due;
+            long firedAt;
+            try
+            {
+                lock.lock();
+                try
+                {
+                    due = awaitDue();
+                    firedAt = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+                }
+                finally
+                {
+                    lock.unlock();
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            if (due.isEmpty())
+            {
+                continue;
+            }
+
+            try
+            {
+                handler.onDue(due, firedAt);
+            }
+            catch (Exception e)
+            {
+                logger.error("Ошибка при обработке уведомлений", e);
+            }
+        }
+    }
+
+    // Ждет наступления ближайших уведомлений и переносит их на следующий интервал
+    private List<DatabaseHelper.ScheduledNotification> awaitDue() throws InterruptedException
+    {
+        while (true)
+        {
+            Entry head = queue.peek();
+            if (head == null)
+            {
+                changed.await();
+                continue;
+            }
+            if (head.cancelled)
+            {
+                queue.poll();
+                continue;
+            }
+
+            long now = System.currentTimeMillis();
+            if (head.dueAtMillis > now)
+            {
+                changed.await(head.dueAtMillis - now, TimeUnit.MILLISECONDS);
+                continue;
+            }
+
+            List<DatabaseHelper.ScheduledNotification> due = new ArrayList<>();
+            while ((head = queue.peek()) != null && head.dueAtMillis <= now)
+            {
+                queue.poll();
+                if (head.cancelled)
+                {
+                    continue;
+                }
+                due.add(new DatabaseHelper.ScheduledNotification(head.userId, head.currency,
+                        head.intervalMinutes, TimeUnit.MILLISECONDS.toSeconds(now)));
+                push(new Entry(head.userId, head.currency, head.intervalMinutes,
+                        now + TimeUnit.MINUTES.toMillis(Math.max(1, head.intervalMinutes))));
+            }
+            return due;
+        }
+    }
+
+    private void push(Entry entry)
+    {
+        queue.add(entry);
+        active.put(key(entry.userId, entry.currency), entry);
+    }
+
+    private static String key(long userId, String currency)
+    {
+        return userId + ":" + currency;
+    }
+}
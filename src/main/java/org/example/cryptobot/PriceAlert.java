@@ -0,0 +1,61 @@
+package org.example.cryptobot;
+
+// Ценовой алерт пользователя. Срабатывает один раз и после этого удаляется:
+// ABOVE - цена поднялась до threshold или выше, BELOW - опустилась до threshold или ниже,
+// CHANGE - цена изменилась на threshold процентов (в любую сторону) за windowMinutes минут.
+public final class PriceAlert
+{
+    public enum Type
+    {
+        ABOVE, BELOW, CHANGE
+    }
+
+    private final long id;
+    private final long userId;
+    private final String currency;
+    private final Type type;
+    private final double threshold;
+    private final int windowMinutes;
+
+    public PriceAlert(long id, long userId, String currency, Type type, double threshold, int windowMinutes)
+    {
+        this.id = id;
+        this.userId = userId;
+        this.currency = currency;
+        this.type = type;
+        this.threshold = threshold;
+        this.windowMinutes = windowMinutes;
+    }
+
+    public long getId()
+    {
+        return id;
+    }
+
+    public long getUserId()
+    {
+        return userId;
+    }
+
+    public String getCurrency()
+    {
+        return currency;
+    }
+
+    public Type getType()
+    {
+        return type;
+    }
+
+    // Цена для ABOVE/BELOW, процент изменения для CHANGE
+    public double getThreshold()
+    {
+        return threshold;
+    }
+
+    // Окно изменения цены для CHANGE; для остальных типов 0
+    public int getWindowMinutes()
+    {
+        return windowMinutes;
+    }
+}
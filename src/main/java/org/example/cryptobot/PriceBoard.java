@@ -0,0 +1,114 @@
+package org.example.cryptobot;
+
+import java.util.Arrays;
+
+// Табло последних цен из потока котировок. У каждой валюты свой слот со ссылкой
+// на неизменяемую котировку: запись - одна volatile-запись, чтение - одно volatile-чтение,
+// без блокировок и без обращения к сети. Номера слотов выдает SymbolTable.
+public class PriceBoard
+{
+    // Последняя цена валюты и время ее получения
+    public static final class Tick
+    {
+        private final double price;
+        private final long updatedAt;
+
+        private Tick(double price, long updatedAt)
+        {
+            this.price = price;
+            this.updatedAt = updatedAt;
+        }
+
+        public double getPrice()
+        {
+            return price;
+        }
+
+        public long getUpdatedAt()
+        {
+            return updatedAt;
+        }
+    }
+
+    private static final class Slot
+    {
+        private volatile Tick tick;
+    }
+
+    private final SymbolTable symbolTable = new SymbolTable();
+    private volatile Slot[] slots = new Slot[64];
+
+    // Обновление цены; вызывается из потока, читающего поток котировок
+    public void update(String symbol, double price, long updatedAt)
+    {
+        slot(symbolTable.intern(symbol)).tick = new Tick(price, updatedAt);
+    }
+
+    // Последняя котировка не старше maxAgeMillis или null
+    public Tick get(String symbol, long maxAgeMillis)
+    {
+        int id = symbolTable.find(symbol);
+        Slot[] current = slots;
+        if (id < 0 || id >= current.length || current[id] == null)
+        {
+            return null;
+        }
+        Tick tick = current[id].tick;
+        if (tick == null || System.currentTimeMillis() - tick.updatedAt > maxAgeMillis)
+        {
+            return null;
+        }
+        return tick;
+    }
+
+    // Сброс всех цен, например при потере соединения: без потока они перестают обновляться
+    public void clear()
+    {
+        for (Slot slot : slots)
+        {
+            if (slot != null)
+            {
+                slot.tick = null;
+            }
+        }
+    }
+
+    // Число валют, по которым есть котировка
+    public int size()
+    {
+        int count = 0;
+        for (Slot slot : slots)
+        {
+            if (slot != null && slot.tick != null)
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private Slot slot(int id)
+    {
+        Slot[] current = slots;
+        if (id < current.length && current[id] != null)
+        {
+            return current[id];
+        }
+
+        synchronized (this)
+        {
+            current = slots;
+            if (id >= current.length)
+            {
+                current = Arrays.copyOf(current, Math.max(current.length * 2, id + 1));
+            }
+            if (current[id] == null)
+            {
+                current[id] = new Slot();
+            }
+            // Новый массив публикуется после заполнения слота
+            slots = current;
+            return current[id];
+        }
+    }
+}
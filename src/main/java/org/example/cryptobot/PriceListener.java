@@ -0,0 +1,8 @@
+package org.example.cryptobot;
+
+// Получатель каждой новой цены из API или потока котировок
+@FunctionalInterface
+public interface PriceListener
+{
+    void onPrice(String symbol, double price);
+}
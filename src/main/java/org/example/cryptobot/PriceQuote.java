@@ -0,0 +1,43 @@
+package org.example.cryptobot;
+
+// Цена валюты вместе с признаком свежести. Устаревшая цена отдается из кэша,
+// когда API недоступен или обновление еще выполняется, и показывается пользователю с возрастом.
+public final class PriceQuote
+{
+    private final double price;
+    private final long ageMillis;
+    private final boolean stale;
+
+    private PriceQuote(double price, long ageMillis, boolean stale)
+    {
+        this.price = price;
+        this.ageMillis = ageMillis;
+        this.stale = stale;
+    }
+
+    public static PriceQuote fresh(double price)
+    {
+        return new PriceQuote(price, 0, false);
+    }
+
+    public static PriceQuote stale(double price, long ageMillis)
+    {
+        return new PriceQuote(price, ageMillis, true);
+    }
+
+    public double getPrice()
+    {
+        return price;
+    }
+
+    // Возраст устаревшей цены; для свежей цены 0
+    public long getAgeMillis()
+    {
+        return ageMillis;
+    }
+
+    public boolean isStale()
+    {
+        return stale;
+    }
+}
@@ -0,0 +1,368 @@
+package org.example.cryptobot;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Поток котировок CryptoCompare по WebSocket: подписка на агрегированный индекс CCCAGG
+// для всех отслеживаемых валют, цены складываются в PriceBoard.
+// При обрыве соединения табло очищается и выполняется переподключение с экспоненциальной задержкой.
+public class PriceStream
+{
+    private static final Logger logger = LoggerFactory.getLogger(PriceStream.class);
+
+    // Типы сообщений стримера
+    private static final String TYPE_AGGREGATE_INDEX = "5";
+    private static final String TYPE_WELCOME = "20";
+    private static final String TYPE_SUBSCRIBE_COMPLETE = "16";
+    private static final String TYPE_HEARTBEAT = "999";
+    private static final String TYPE_UNAUTHORIZED = "401";
+    private static final String TYPE_TOO_MANY_SOCKETS = "429";
+    private static final String TYPE_INVALID_SUB = "500";
+
+    private static final long MIN_RECONNECT_DELAY = TimeUnit.SECONDS.toMillis(1);
+    private static final long MAX_RECONNECT_DELAY = TimeUnit.MINUTES.toMillis(1);
+    // Стример присылает heartbeat каждые 30 секунд; дольше тишины - соединение зависло
+    private static final long SILENCE_TIMEOUT = TimeUnit.SECONDS.toMillis(90);
+    // Ограничение на длину одного сообщения подписки
+    private static final int MAX_SUBS_PER_MESSAGE = 100;
+
+    private final OkHttpClient client;
+    private final String url;
+    private final PriceBoard board;
+    private final PriceListener priceListener;
+    private final Set<String> symbols = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService scheduler;
+
+    private volatile WebSocket socket;
+    private volatile boolean live;
+    private volatile boolean running;
+    private volatile long lastMessageAt;
+    private long reconnectDelay = MIN_RECONNECT_DELAY;
+
+    private final AtomicLong ticks = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+
+    public PriceStream(OkHttpClient client, String url, PriceBoard board, PriceListener priceListener)
+    {
+        // Для WebSocket таймаут чтения не нужен: живость проверяется ping и heartbeat стримера
+        this.client = client.newBuilder()
+                .readTimeout(0, TimeUnit.MILLISECONDS)
+                .pingInterval(30, TimeUnit.SECONDS)
+                .build();
+        this.url = url;
+        this.board = board;
+        this.priceListener = priceListener;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable ->
+        {
+            Thread thread = new Thread(runnable, "price-stream");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public synchronized void start()
+    {
+        if (running)
+        {
+            return;
+        }
+        running = true;
+        scheduler.scheduleWithFixedDelay(this::checkSilence, SILENCE_TIMEOUT, SILENCE_TIMEOUT / 3, TimeUnit.MILLISECONDS);
+        connect();
+    }
+
+    public synchronized void stop()
+    {
+        running = false;
+        scheduler.shutdownNow();
+        WebSocket current = socket;
+        if (current != null)
+        {
+            current.close(1000, "shutdown");
+        }
+        markDown();
+    }
+
+    // Соединение установлено и подписка действует: цены на табло актуальны
+    public boolean isLive()
+    {
+        return live;
+    }
+
+    // Добавление валют в подписку; уже подписанные валюты пропускаются
+    public void watch(Collection<String> currencySymbols)
+    {
+        List<String> added = new ArrayList<>();
+        for (String symbol : currencySymbols)
+        {
+            if (symbols.add(symbol))
+            {
+                added.add(symbol);
+            }
+        }
+        if (!added.isEmpty() && live)
+        {
+            send("SubAdd", added);
+        }
+    }
+
+    // Приведение подписки к заданному набору валют: лишние отписываются, новые добавляются
+    public void retain(Collection<String> currencySymbols)
+    {
+        List<String> removed = new ArrayList<>();
+        for (String symbol : symbols)
+        {
+            if (!currencySymbols.contains(symbol))
+            {
+                symbols.remove(symbol);
+                removed.add(symbol);
+            }
+        }
+        if (!removed.isEmpty() && live)
+        {
+            send("SubRemove", removed);
+        }
+        watch(currencySymbols);
+    }
+
+    public String getStats()
+    {
+        return String.format("поток %s, валют %d, на табло %d, котировок %d, переподключений %d",
+                live ? "активен" : "не подключен", symbols.size(), board.size(), ticks.get(), reconnects.get());
+    }
+
+    private void connect()
+    {
+        if (!running)
+        {
+            return;
+        }
+        Request request = new Request.Builder().url(url).build();
+        lastMessageAt = System.currentTimeMillis();
+        socket = client.newWebSocket(request, new Listener());
+    }
+
+    private void send(String action, Collection<String> currencySymbols)
+    {
+        WebSocket current = socket;
+        if (current != null)
+        {
+            send(current, action, currencySymbols);
+        }
+    }
+
+    private void send(WebSocket target, String action, Collection<String> currencySymbols)
+    {
+        List<String> subs = new ArrayList<>(currencySymbols);
+        for (int from = 0; from < subs.size(); from += MAX_SUBS_PER_MESSAGE)
+        {
+            StringBuilder message = new StringBuilder("{\"action\":\"").append(action).append("\",\"subs\":[");
+            int to = Math.min(subs.size(), from + MAX_SUBS_PER_MESSAGE);
+            for (int i = from; i < to; i++)
+            {
+                if (i > from)
+                {
+                    message.append(',');
+                }
+                message.append("\"5~CCCAGG~").append(subs.get(i)).append("~USD\"");
+            }
+            message.append("]}");
+            target.send(message.toString());
+        }
+    }
+
+    // Переподключение, если стример долго молчит: соединение могло зависнуть без ошибки
+    private void checkSilence()
+    {
+        WebSocket current = socket;
+        if (running && current != null && System.currentTimeMillis() - lastMessageAt > SILENCE_TIMEOUT)
+        {
+            logger.warn("Поток котировок молчит дольше {} мс, переподключаемся", SILENCE_TIMEOUT);
+            current.cancel();
+            reconnect(current);
+        }
+    }
+
+    private synchronized void reconnect(WebSocket failed)
+    {
+        // Повторные уведомления о том же соединении (onFailure после cancel) игнорируем
+        if (socket != failed)
+        {
+            return;
+        }
+        socket = null;
+        markDown();
+        if (!running)
+        {
+            return;
+        }
+        long delay = reconnectDelay;
+        reconnectDelay = Math.min(MAX_RECONNECT_DELAY, reconnectDelay * 2);
+        reconnects.incrementAndGet();
+        logger.info("Переподключение к потоку котировок через {} мс", delay);
+        scheduler.schedule(this::connectSafely, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void connectSafely()
+    {
+        try
+        {
+            connect();
+        }
+        catch (RuntimeException e)
+        {
+            logger.error("Не удалось подключиться к потоку котировок", e);
+        }
+    }
+
+    private void markDown()
+    {
+        live = false;
+        // Без соединения цены на табло перестают обновляться - пусть читатели идут в REST
+        board.clear();
+    }
+
+    private void handleMessage(String text) throws IOException
+    {
+        String type = null;
+        String fromSymbol = null;
+        String toSymbol = null;
+        String message = null;
+        double price = Double.NaN;
+
+        try (JsonReader reader = new JsonReader(new StringReader(text)))
+        {
+            reader.beginObject();
+            while (reader.hasNext())
+            {
+                String name = reader.nextName();
+                if (reader.peek() == JsonToken.NULL)
+                {
+                    reader.nextNull();
+                    continue;
+                }
+                switch (name)
+                {
+                    case "TYPE":
+                        type = reader.nextString();
+                        break;
+                    case "FROMSYMBOL":
+                        fromSymbol = reader.nextString();
+                        break;
+                    case "TOSYMBOL":
+                        toSymbol = reader.nextString();
+                        break;
+                    case "PRICE":
+                        price = reader.nextDouble();
+                        break;
+                    case "MESSAGE":
+                        message = reader.nextString();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+        }
+
+        if (type == null)
+        {
+            return;
+        }
+        switch (type)
+        {
+            case TYPE_AGGREGATE_INDEX:
+                // Сообщения без PRICE несут только изменения объема
+                if (fromSymbol != null && "USD".equals(toSymbol) && !Double.isNaN(price))
+                {
+                    // Время получения, а не время сделки: табло хранит свежесть данных потока
+                    board.update(fromSymbol, price, System.currentTimeMillis());
+                    ticks.incrementAndGet();
+                    priceListener.onPrice(fromSymbol, price);
+                }
+                break;
+            case TYPE_WELCOME:
+                logger.info("Поток котировок подключен, подписка на {} валют", symbols.size());
+                break;
+            case TYPE_SUBSCRIBE_COMPLETE:
+            case TYPE_HEARTBEAT:
+                break;
+            case TYPE_INVALID_SUB:
+                logger.debug("Стример отклонил подписку: {}", message);
+                break;
+            case TYPE_UNAUTHORIZED:
+            case TYPE_TOO_MANY_SOCKETS:
+                logger.error("Стример отклонил соединение ({}): {}", type, message);
+                break;
+            default:
+                logger.debug("Сообщение стримера типа {}: {}", type, message);
+        }
+    }
+
+    private class Listener extends WebSocketListener
+    {
+        @Override
+        public void onOpen(WebSocket webSocket, Response response)
+        {
+            synchronized (PriceStream.this)
+            {
+                reconnectDelay = MIN_RECONNECT_DELAY;
+                live = true;
+            }
+            lastMessageAt = System.currentTimeMillis();
+            send(webSocket, "SubAdd", symbols);
+        }
+
+        @Override
+        public void onMessage(WebSocket webSocket, String text)
+        {
+            lastMessageAt = System.currentTimeMillis();
+            try
+            {
+                handleMessage(text);
+            }
+            catch (IOException | RuntimeException e)
+            {
+                logger.warn("Не удалось разобрать сообщение стримера: {}", text, e);
+            }
+        }
+
+        @Override
+        public void onClosing(WebSocket webSocket, int code, String reason)
+        {
+            webSocket.close(code, null);
+        }
+
+        @Override
+        public void onClosed(WebSocket webSocket, int code, String reason)
+        {
+            logger.warn("Поток котировок закрыт: {} {}", code, reason);
+            reconnect(webSocket);
+        }
+
+        @Override
+        public void onFailure(WebSocket webSocket, Throwable t, Response response)
+        {
+            logger.warn("Ошибка потока котировок: {}", t.getMessage());
+            reconnect(webSocket);
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package org.example.cryptobot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Состояние диалога с каждым чатом: текущий шаг, выбранные валюты и валюта,
+// для которой настраивается уведомление. Сессии, к которым долго не обращались
+// (пользователь бросил диалог на середине), удаляются фоновой очисткой.
+public class SessionStore
+{
+    private static final Logger logger = LoggerFactory.getLogger(SessionStore.class);
+
+    private static final long SESSION_TTL = TimeUnit.MINUTES.toMillis(30);
+    private static final long SWEEP_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+    // Шаг диалога, на котором находится пользователь
+    public enum ChatState
+    {
+        NONE,
+        MULTI_ADD,
+        MULTI_REMOVE,
+        MULTI_PRICE,
+        MANUAL_ADD,
+        MANUAL_REMOVE,
+        MANUAL_PRICE,
+        CUSTOM_INTERVAL
+    }
+
+    // Независимые наборы выбранных валют для каждого мультивыбора
+    public enum Selection
+    {
+        ADD, REMOVE, PRICE
+    }
+
+    private static final Selection[] SELECTIONS = Selection.values();
+
+    // Сессия одного чата. Обновления чата обрабатываются последовательно (см. UpdateDispatcher),
+    // поэтому поля сессии не требуют синхронизации
+    public static class Session
+    {
+        private final SymbolTable symbolTable;
+        private final BitSet[] selections = new BitSet[SELECTIONS.length];
+        private ChatState state = ChatState.NONE;
+        private int notificationCurrencyId = -1;
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        private Session(SymbolTable symbolTable)
+        {
+            this.symbolTable = symbolTable;
+        }
+
+        public ChatState getState()
+        {
+            return state;
+        }
+
+        public void setState(ChatState state)
+        {
+            this.state = state;
+        }
+
+        // Переключает выбор валюты; true, если валюта стала выбранной
+        public boolean toggle(Selection selection, String symbol)
+        {
+            int id = symbolTable.intern(symbol);
+            BitSet selected = selections[selection.ordinal()];
+            if (selected == null)
+            {
+                selected = new BitSet();
+                selections[selection.ordinal()] = selected;
+            }
+            selected.flip(id);
+            return selected.get(id);
+        }
+
+        public boolean isSelected(Selection selection, String symbol)
+        {
+            BitSet selected = selections[selection.ordinal()];
+            if (selected == null)
+            {
+                return false;
+            }
+            int id = symbolTable.find(symbol);
+            return id >= 0 && selected.get(id);
+        }
+
+        public List<String> getSelected(Selection selection)
+        {
+            List<String> result = new ArrayList<>();
+            BitSet selected = selections[selection.ordinal()];
+            if (selected != null)
+            {
+                for (int id = selected.nextSetBit(0); id >= 0; id = selected.nextSetBit(id + 1))
+                {
+                    result.add(symbolTable.symbol(id));
+                }
+            }
+            return result;
+        }
+
+        public void clearSelection(Selection selection)
+        {
+            selections[selection.ordinal()] = null;
+        }
+
+        public String getNotificationCurrency()
+        {
+            return notificationCurrencyId >= 0 ? symbolTable.symbol(notificationCurrencyId) : null;
+        }
+
+        public void setNotificationCurrency(String currency)
+        {
+            notificationCurrencyId = currency != null ? symbolTable.intern(currency) : -1;
+        }
+
+        private boolean isExpired(long now)
+        {
+            return now - lastAccess > SESSION_TTL;
+        }
+    }
+
+    private final Map<Long, Session> sessions = new ConcurrentHashMap<>();
+    private final SymbolTable symbolTable = new SymbolTable();
+    private ScheduledExecutorService sweeper;
+
+    // Сессия чата; создается при первом обращении
+    public Session get(long chatId)
+    {
+        return sessions.compute(chatId, (id, session) ->
+        {
+            if (session == null)
+            {
+                session = new Session(symbolTable);
+            }
+            session.lastAccess = System.currentTimeMillis();
+            return session;
+        });
+    }
+
+    // Сессия чата или null, если ее нет; новая сессия не создается
+    public Session find(long chatId)
+    {
+        Session session = sessions.get(chatId);
+        if (session != null)
+        {
+            session.lastAccess = System.currentTimeMillis();
+        }
+        return session;
+    }
+
+    // Текущий шаг диалога без создания сессии
+    public ChatState getState(long chatId)
+    {
+        Session session = find(chatId);
+        return session != null ? session.getState() : ChatState.NONE;
+    }
+
+    public void setState(long chatId, ChatState state)
+    {
+        get(chatId).setState(state);
+    }
+
+    // Начало мультивыбора: новое состояние и пустой набор выбранных валют
+    public void startSelection(long chatId, ChatState state, Selection selection)
+    {
+        Session session = get(chatId);
+        session.setState(state);
+        session.clearSelection(selection);
+    }
+
+    // Завершение мультивыбора: состояние сбрасывается, набор очищается
+    public void finishSelection(long chatId, Selection selection)
+    {
+        Session session = find(chatId);
+        if (session != null)
+        {
+            session.setState(ChatState.NONE);
+            session.clearSelection(selection);
+        }
+    }
+
+    public void resetState(long chatId)
+    {
+        Session session = find(chatId);
+        if (session != null)
+        {
+            session.setState(ChatState.NONE);
+        }
+    }
+
+    public List<String> getSelected(long chatId, Selection selection)
+    {
+        Session session = find(chatId);
+        return session != null ? session.getSelected(selection) : new ArrayList<>();
+    }
+
+    public String getNotificationCurrency(long chatId)
+    {
+        Session session = find(chatId);
+        return session != null ? session.getNotificationCurrency() : null;
+    }
+
+    // null сбрасывает выбранную валюту, не создавая сессию
+    public void setNotificationCurrency(long chatId, String currency)
+    {
+        Session session = currency != null ? get(chatId) : find(chatId);
+        if (session != null)
+        {
+            session.setNotificationCurrency(currency);
+        }
+    }
+
+    // Количество живых сессий
+    public int size()
+    {
+        return sessions.size();
+    }
+
+    public synchronized void start()
+    {
+        if (sweeper != null)
+        {
+            return;
+        }
+
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable ->
+        {
+            Thread thread = new Thread(runnable, "session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, SWEEP_INTERVAL, SWEEP_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop()
+    {
+        if (sweeper != null)
+        {
+            sweeper.shutdownNow();
+            sweeper = null;
+        }
+    }
+
+    // Удаление сессий, к которым не обращались дольше TTL
+    private void sweep()
+    {
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        for (Long chatId : sessions.keySet())
+        {
+            // Проверка и удаление атомарны относительно get(): только что полученная сессия не удаляется
+            boolean[] expired = new boolean[1];
+            sessions.computeIfPresent(chatId, (id, session) ->
+            {
+                expired[0] = session.isExpired(now);
+                return expired[0] ? null : session;
+            });
+            if (expired[0])
+            {
+                removed++;
+            }
+        }
+
+        if (removed > 0)
+        {
+            logger.info("Удалено {} неактивных сессий, активных: {}", removed, sessions.size());
+        }
+    }
+}
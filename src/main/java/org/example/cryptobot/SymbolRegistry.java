@@ -0,0 +1,188 @@
+package org.example.cryptobot;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// Локальный справочник символов валют из списка монет CryptoCompare (/data/all/coinlist).
+// Символы хранятся отсортированным массивом: проверка - бинарный поиск без сетевого запроса,
+// поиск похожих валют по символу и названию - через SymbolSearchIndex.
+// Справочник неизменяемый и заменяется целиком при обновлении, поэтому читается без блокировок.
+public class SymbolRegistry
+{
+    private static final class Snapshot
+    {
+        private final String[] symbols;
+        private final String[] names;
+        private final SymbolSearchIndex searchIndex;
+
+        private Snapshot(String[] symbols, String[] names)
+        {
+            this.symbols = symbols;
+            this.names = names;
+            this.searchIndex = new SymbolSearchIndex(symbols, names);
+        }
+    }
+
+    private volatile Snapshot snapshot;
+
+    // Справочник загружен; до этого проверка валют идет через API
+    public boolean isLoaded()
+    {
+        return snapshot != null;
+    }
+
+    public int size()
+    {
+        Snapshot current = snapshot;
+        return current == null ? 0 : current.symbols.length;
+    }
+
+    public boolean contains(String symbol)
+    {
+        Snapshot current = snapshot;
+        return current != null && Arrays.binarySearch(current.symbols, symbol) >= 0;
+    }
+
+    // Полное название валюты ("Bitcoin") или null, если символ неизвестен
+    public String getName(String symbol)
+    {
+        Snapshot current = snapshot;
+        if (current == null)
+        {
+            return null;
+        }
+        int index = Arrays.binarySearch(current.symbols, symbol);
+        return index >= 0 ? current.names[index] : null;
+    }
+
+    // Символы, похожие на запрос (символ с опечаткой, название или его начало); не больше limit
+    public List<String> search(String query, int limit)
+    {
+        Snapshot current = snapshot;
+        return current == null ? Collections.emptyList() : current.searchIndex.search(query, limit);
+    }
+
+    // Замена справочника ответом coinlist; разбор потоковый, ответ занимает несколько мегабайт
+    public void load(Reader source) throws IOException
+    {
+        List<String[]> entries = new ArrayList<>(16384);
+        String status = null;
+        String message = null;
+
+        try (JsonReader reader = new JsonReader(source))
+        {
+            reader.beginObject();
+            while (reader.hasNext())
+            {
+                String field = reader.nextName();
+                if (reader.peek() == JsonToken.NULL)
+                {
+                    reader.nextNull();
+                    continue;
+                }
+                switch (field)
+                {
+                    case "Response":
+                        status = reader.nextString();
+                        break;
+                    case "Message":
+                        message = reader.nextString();
+                        break;
+                    case "Data":
+                        if (reader.peek() == JsonToken.BEGIN_OBJECT)
+                        {
+                            readCoins(reader, entries);
+                        }
+                        else
+                        {
+                            reader.skipValue();
+                        }
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+
+        if ("Error".equals(status))
+        {
+            throw new IOException("API error: " + message);
+        }
+        if (entries.isEmpty())
+        {
+            throw new IOException("Пустой список монет: Response=" + status + ", Message=" + message);
+        }
+
+        entries.sort((left, right) -> left[0].compareTo(right[0]));
+        String[] symbols = new String[entries.size()];
+        String[] names = new String[entries.size()];
+        int size = 0;
+        for (String[] entry : entries)
+        {
+            // Символы приводятся к верхнему регистру, совпадающие после этого пропускаются
+            if (size > 0 && symbols[size - 1].equals(entry[0]))
+            {
+                continue;
+            }
+            symbols[size] = entry[0];
+            names[size] = entry[1];
+            size++;
+        }
+        snapshot = new Snapshot(Arrays.copyOf(symbols, size), Arrays.copyOf(names, size));
+    }
+
+    // Data: {"BTC": {"Symbol": "BTC", "FullName": "Bitcoin (BTC)", ...}, ...}
+    private static void readCoins(JsonReader reader, List<String[]> entries) throws IOException
+    {
+        reader.beginObject();
+        while (reader.hasNext())
+        {
+            String key = reader.nextName();
+            if (reader.peek() != JsonToken.BEGIN_OBJECT)
+            {
+                reader.skipValue();
+                continue;
+            }
+
+            String symbol = key;
+            String name = null;
+            reader.beginObject();
+            while (reader.hasNext())
+            {
+                String field = reader.nextName();
+                if (reader.peek() == JsonToken.NULL)
+                {
+                    reader.nextNull();
+                }
+                else if (field.equals("Symbol"))
+                {
+                    symbol = reader.nextString();
+                }
+                else if (field.equals("FullName") || (field.equals("CoinName") && name == null))
+                {
+                    name = reader.nextString();
+                }
+                else
+                {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            symbol = symbol.trim().toUpperCase();
+            if (!symbol.isEmpty())
+            {
+                entries.add(new String[]{symbol, name != null ? name : symbol});
+            }
+        }
+        reader.endObject();
+    }
+}
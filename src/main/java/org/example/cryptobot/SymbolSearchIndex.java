@@ -0,0 +1,353 @@
+package org.example.cryptobot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+// Нечеткий поиск валюты по символу и названию ("bitcoin", "ETHH", "solan").
+// Кандидаты набираются по префиксу (бинарный поиск в отсортированных символах и названиях)
+// и по общим триграммам, затем ранжируются расстоянием редактирования.
+// Индекс неизменяемый и строится один раз при загрузке справочника.
+public final class SymbolSearchIndex
+{
+    // Сколько кандидатов по триграммам проверяется расстоянием редактирования (отдельно для символов и названий)
+    private static final int MAX_CANDIDATES = 64;
+    // Сколько кандидатов берется из диапазона по префиксу
+    private static final int MAX_PREFIX_CANDIDATES = 16;
+    // Длиннее запрос не бывает: символы короткие, названия - несколько слов
+    private static final int MAX_QUERY_LENGTH = 32;
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    // Стоимость совпадения в десятых долях правки: точное совпадение лучше префикса,
+    // короткий префикс лучше одной опечатки, чем длиннее остаток после префикса - тем хуже.
+    // Префикс и начало слова в названии принимаются всегда, опечатки - не больше maxEdits
+    private static final int EXACT_COST = 0;
+    private static final int PREFIX_COST = 4;
+    private static final int PREFIX_EXTRA_CHAR_COST = 3;
+    private static final int MAX_PREFIX_COST = 19;
+    private static final int WORD_PREFIX_COST = 15;
+    private static final int EDIT_COST = 10;
+
+    private final String[] symbols;
+    private final String[] keys;
+    private final String[] names;
+    private final int[] nameOrder;
+    private final Trigrams symbolTrigrams;
+    private final Trigrams nameTrigrams;
+
+    // symbols - отсортированные символы в верхнем регистре, names - их полные названия
+    public SymbolSearchIndex(String[] symbols, String[] names)
+    {
+        this.symbols = symbols;
+        this.keys = new String[symbols.length];
+        this.names = new String[symbols.length];
+        for (int i = 0; i < symbols.length; i++)
+        {
+            keys[i] = symbols[i].toLowerCase();
+            this.names[i] = normalizeName(names[i], symbols[i]);
+        }
+
+        Integer[] order = new Integer[symbols.length];
+        for (int i = 0; i < order.length; i++)
+        {
+            order[i] = i;
+        }
+        Arrays.sort(order, (left, right) -> this.names[left].compareTo(this.names[right]));
+        nameOrder = new int[order.length];
+        for (int i = 0; i < order.length; i++)
+        {
+            nameOrder[i] = order[i];
+        }
+
+        // Символ и название ищутся раздельно: иначе короткий символ с опечаткой ("ETHH")
+        // теряется среди множества названий с той же триграммой
+        symbolTrigrams = new Trigrams(keys);
+        nameTrigrams = new Trigrams(this.names);
+    }
+
+    // Символы, похожие на запрос, от лучшего совпадения к худшему; не больше limit
+    public List<String> search(String query, int limit)
+    {
+        String normalized = normalizeQuery(query);
+        if (normalized.isEmpty() || symbols.length == 0)
+        {
+            return Collections.emptyList();
+        }
+
+        Set<Integer> candidates = new HashSet<>();
+        addPrefixCandidates(normalized, candidates);
+        long[] grams = trigrams(normalized);
+        symbolTrigrams.collect(grams, candidates);
+        nameTrigrams.collect(grams, candidates);
+
+        int maxEdits = normalized.length() <= 4 ? 1 : normalized.length() <= 8 ? 2 : 3;
+        List<long[]> scored = new ArrayList<>(candidates.size());
+        for (int doc : candidates)
+        {
+            int cost = Math.min(cost(normalized, keys[doc], maxEdits), cost(normalized, names[doc], maxEdits));
+            if (cost <= Math.max(maxEdits * EDIT_COST, MAX_PREFIX_COST))
+            {
+                scored.add(new long[]{cost, doc});
+            }
+        }
+
+        // При равной стоимости выше короткие названия: "Bitcoin" раньше "Bitcoin Cash"
+        scored.sort((left, right) ->
+        {
+            if (left[0] != right[0])
+            {
+                return Long.compare(left[0], right[0]);
+            }
+            int byLength = Integer.compare(names[(int) left[1]].length(), names[(int) right[1]].length());
+            return byLength != 0 ? byLength : symbols[(int) left[1]].compareTo(symbols[(int) right[1]]);
+        });
+
+        List<String> result = new ArrayList<>(Math.min(limit, scored.size()));
+        for (int i = 0; i < scored.size() && result.size() < limit; i++)
+        {
+            result.add(symbols[(int) scored.get(i)[1]]);
+        }
+        return result;
+    }
+
+    // Название валюты без символа в скобках: "Bitcoin (BTC)" -> "bitcoin"
+    private static String normalizeName(String name, String symbol)
+    {
+        String suffix = " (" + symbol + ")";
+        String trimmed = name.regionMatches(true, name.length() - suffix.length(), suffix, 0, suffix.length())
+                ? name.substring(0, name.length() - suffix.length())
+                : name;
+        return normalizeQuery(trimmed);
+    }
+
+    private static String normalizeQuery(String query)
+    {
+        String normalized = WHITESPACE.matcher(query.trim().toLowerCase()).replaceAll(" ");
+        return normalized.length() > MAX_QUERY_LENGTH ? normalized.substring(0, MAX_QUERY_LENGTH) : normalized;
+    }
+
+    private void addPrefixCandidates(String query, Set<Integer> candidates)
+    {
+        int from = lowerBound(query, true);
+        for (int i = from; i < keys.length && i < from + MAX_PREFIX_CANDIDATES && keys[i].startsWith(query); i++)
+        {
+            candidates.add(i);
+        }
+        from = lowerBound(query, false);
+        for (int i = from; i < nameOrder.length && i < from + MAX_PREFIX_CANDIDATES; i++)
+        {
+            if (!names[nameOrder[i]].startsWith(query))
+            {
+                break;
+            }
+            candidates.add(nameOrder[i]);
+        }
+    }
+
+    // Первая позиция не меньше query среди символов или среди названий
+    private int lowerBound(String query, boolean bySymbol)
+    {
+        int low = 0;
+        int high = symbols.length;
+        while (low < high)
+        {
+            int middle = (low + high) >>> 1;
+            String value = bySymbol ? keys[middle] : names[nameOrder[middle]];
+            if (value.compareTo(query) < 0)
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Стоимость совпадения запроса с символом или названием в десятых долях правки
+    private static int cost(String query, String key, int maxEdits)
+    {
+        if (key.equals(query))
+        {
+            return EXACT_COST;
+        }
+        if (key.startsWith(query))
+        {
+            return Math.min(MAX_PREFIX_COST, PREFIX_COST + PREFIX_EXTRA_CHAR_COST * (key.length() - query.length()));
+        }
+        if (key.contains(" " + query))
+        {
+            return WORD_PREFIX_COST;
+        }
+        return EDIT_COST * editDistance(query, key, maxEdits);
+    }
+
+    // Расстояние Дамерау-Левенштейна (перестановка соседних букв - одна правка).
+    // Больше maxEdits не считается точно: возвращается maxEdits + 1
+    private static int editDistance(String left, String right, int maxEdits)
+    {
+        if (Math.abs(left.length() - right.length()) > maxEdits)
+        {
+            return maxEdits + 1;
+        }
+
+        int[] previous2 = new int[right.length() + 1];
+        int[] previous = new int[right.length() + 1];
+        int[] current = new int[right.length() + 1];
+        for (int j = 0; j <= right.length(); j++)
+        {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= left.length(); i++)
+        {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= right.length(); j++)
+            {
+                int substitution = left.charAt(i - 1) == right.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + substitution);
+                if (i > 1 && j > 1 && left.charAt(i - 1) == right.charAt(j - 2) && left.charAt(i - 2) == right.charAt(j - 1))
+                {
+                    value = Math.min(value, previous2[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (rowMin > maxEdits)
+            {
+                return maxEdits + 1;
+            }
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+        }
+        return Math.min(previous[right.length()], maxEdits + 1);
+    }
+
+    // Различные триграммы строки по возрастанию. Маркеры начала и конца нужны,
+    // чтобы короткие строки тоже давали триграммы, а совпадение начала весило больше
+    private static long[] trigrams(String value)
+    {
+        String padded = "\u0002" + value + "\u0003";
+        long[] grams = new long[padded.length() - 2];
+        for (int i = 0; i < grams.length; i++)
+        {
+            grams[i] = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+        }
+        Arrays.sort(grams);
+        int size = 0;
+        for (long gram : grams)
+        {
+            if (size == 0 || grams[size - 1] != gram)
+            {
+                grams[size++] = gram;
+            }
+        }
+        return size == grams.length ? grams : Arrays.copyOf(grams, size);
+    }
+
+    // Списки строк по триграммам, уложенные подряд в один массив: строки триграммы с номером id
+    // лежат в docs[offsets[id]..offsets[id + 1])
+    private static final class Trigrams
+    {
+        private final int size;
+        private final Map<Long, Integer> ids = new HashMap<>();
+        private final int[] offsets;
+        private final int[] docs;
+
+        private Trigrams(String[] values)
+        {
+            size = values.length;
+            long[][] docGrams = new long[values.length][];
+            int[] counts = new int[1024];
+            int total = 0;
+            for (int doc = 0; doc < values.length; doc++)
+            {
+                docGrams[doc] = trigrams(values[doc]);
+                for (long gram : docGrams[doc])
+                {
+                    int id = ids.computeIfAbsent(gram, key -> ids.size());
+                    if (id >= counts.length)
+                    {
+                        counts = Arrays.copyOf(counts, counts.length * 2);
+                    }
+                    counts[id]++;
+                    total++;
+                }
+            }
+
+            offsets = new int[ids.size() + 1];
+            for (int id = 0; id < ids.size(); id++)
+            {
+                offsets[id + 1] = offsets[id] + counts[id];
+            }
+            docs = new int[total];
+            int[] next = Arrays.copyOf(offsets, ids.size());
+            for (int doc = 0; doc < values.length; doc++)
+            {
+                for (long gram : docGrams[doc])
+                {
+                    docs[next[ids.get(gram)]++] = doc;
+                }
+            }
+        }
+
+        // Строки с наибольшим числом общих с запросом триграмм, не больше MAX_CANDIDATES
+        private void collect(long[] grams, Set<Integer> candidates)
+        {
+            int[] counts = new int[size];
+            int[] touched = new int[size];
+            int touchedCount = 0;
+            for (long gram : grams)
+            {
+                Integer id = ids.get(gram);
+                if (id == null)
+                {
+                    continue;
+                }
+                for (int i = offsets[id]; i < offsets[id + 1]; i++)
+                {
+                    if (counts[docs[i]]++ == 0)
+                    {
+                        touched[touchedCount++] = docs[i];
+                    }
+                }
+            }
+
+            // Порог по числу общих триграмм, при котором кандидатов не больше MAX_CANDIDATES;
+            // если даже на лучшем уровне их больше - берутся первые MAX_CANDIDATES.
+            // Одна общая триграмма из многих - случайное совпадение
+            int minShared = Math.max(1, grams.length / 3);
+            int[] histogram = new int[grams.length + 1];
+            for (int i = 0; i < touchedCount; i++)
+            {
+                histogram[counts[touched[i]]]++;
+            }
+            int threshold = grams.length;
+            int selected = histogram[threshold];
+            while (threshold > minShared && (selected == 0 || selected + histogram[threshold - 1] <= MAX_CANDIDATES))
+            {
+                threshold--;
+                selected += histogram[threshold];
+            }
+
+            int added = 0;
+            for (int i = 0; i < touchedCount && added < MAX_CANDIDATES; i++)
+            {
+                if (counts[touched[i]] >= threshold)
+                {
+                    candidates.add(touched[i]);
+                    added++;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.example.cryptobot;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Таблица символов валют: каждому символу присваивается постоянный номер,
+// чтобы хранить наборы валют битовыми масками вместо множеств строк.
+// Номера только добавляются и никогда не переиспользуются.
+public class SymbolTable
+{
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] symbols = new String[64];
+    private int size;
+
+    // Номер символа; новый символ получает следующий свободный номер
+    public int intern(String symbol)
+    {
+        Integer id = ids.get(symbol);
+        if (id != null)
+        {
+            return id;
+        }
+
+        synchronized (this)
+        {
+            id = ids.get(symbol);
+            if (id != null)
+            {
+                return id;
+            }
+
+            String[] current = symbols;
+            if (size == current.length)
+            {
+                current = Arrays.copyOf(current, current.length * 2);
+            }
+            current[size] = symbol;
+            // Массив публикуется до номера: читатель, получивший номер, увидит и символ
+            symbols = current;
+            ids.put(symbol, size);
+            return size++;
+        }
+    }
+
+    // Номер символа или -1, если символ еще не встречался
+    public int find(String symbol)
+    {
+        Integer id = ids.get(symbol);
+        return id != null ? id : -1;
+    }
+
+    public String symbol(int id)
+    {
+        return symbols[id];
+    }
+
+    public int size()
+    {
+        return ids.size();
+    }
+}
@@ -0,0 +1,66 @@
+package org.example.cryptobot;
+
+import java.util.concurrent.TimeUnit;
+
+// Ограничитель частоты "ведро токенов": rate токенов в секунду, не больше capacity подряд.
+// Токен резервируется сразу, а вызывающий получает время, которое нужно подождать.
+public class TokenBucket
+{
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefillNanos;
+
+    public TokenBucket(double capacity, double tokensPerSecond)
+    {
+        this.capacity = capacity;
+        this.tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    // Резервирует токен и возвращает время ожидания в наносекундах (0, если токен был свободен)
+    public synchronized long reserve()
+    {
+        refill();
+        tokens -= 1;
+        return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / tokensPerNano);
+    }
+
+    // Забирает токен, если он свободен, и возвращает 0; иначе ничего не резервирует
+    // и возвращает время до появления токена в наносекундах
+    public synchronized long tryAcquire()
+    {
+        refill();
+        if (tokens >= 1)
+        {
+            tokens -= 1;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+
+    // Резервирует токен и ждет, пока он станет доступен
+    public void acquire() throws InterruptedException
+    {
+        long waitNanos = reserve();
+        if (waitNanos > 0)
+        {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    // Ведро полное и давно не использовалось: его можно удалить
+    public synchronized boolean isIdle()
+    {
+        refill();
+        return tokens >= capacity;
+    }
+
+    private void refill()
+    {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+        lastRefillNanos = now;
+    }
+}
@@ -0,0 +1,177 @@
+package org.example.cryptobot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+// Параллельная обработка обновлений Telegram.
+// Обновления распределяются по разделам по chatId: у каждого раздела один поток,
+// поэтому обновления одного чата обрабатываются строго по порядку,
+// а медленный запрос одного пользователя не задерживает остальных.
+public class UpdateDispatcher
+{
+    private static final Logger logger = LoggerFactory.getLogger(UpdateDispatcher.class);
+
+    private static final int PARTITION_COUNT = 8;
+    private static final int PARTITION_QUEUE_CAPACITY = 256;
+    private static final int STATS_LOG_EVERY = 1000;
+
+    private static class Task
+    {
+        private final Update update;
+        private final long enqueuedAtNanos = System.nanoTime();
+
+        Task(Update update)
+        {
+            this.update = update;
+        }
+    }
+
+    private final Consumer<Update> handler;
+    private final BlockingQueue<Task>[] partitions;
+
+    private final AtomicLong processed = new AtomicLong();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalQueueNanos = new LongAdder();
+    private final LongAdder totalHandlerNanos = new LongAdder();
+    private final AtomicLong maxQueueNanos = new AtomicLong();
+    private final AtomicLong maxHandlerNanos = new AtomicLong();
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public UpdateDispatcher(Consumer<Update> handler)
+    {
+        this.handler = handler;
+        this.partitions = new BlockingQueue[PARTITION_COUNT];
+        for (int i = 0; i < PARTITION_COUNT; i++)
+        {
+            BlockingQueue<Task> queue = new ArrayBlockingQueue<>(PARTITION_QUEUE_CAPACITY);
+            partitions[i] = queue;
+            Thread worker = new Thread(() -> runWorker(queue), "update-worker-" + i);
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    // Ставит обновление в очередь его чата. Если очередь заполнена, поток получения
+    // обновлений ждет, пока она освободится: это и есть обратное давление на long polling.
+    // Отбрасывать нельзя - смещение уже сдвинуто, и Telegram это обновление больше не пришлет
+    public void submit(Update update)
+    {
+        BlockingQueue<Task> queue = partitions[Math.floorMod(getChatId(update), PARTITION_COUNT)];
+        try
+        {
+            queue.put(new Task(update));
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            rejected.increment();
+            logger.warn("Постановка обновления {} в очередь прервана, обновление отброшено", update.getUpdateId());
+        }
+    }
+
+    // Постановка в очередь без ожидания для webhook: при заполненной очереди возвращает false,
+    // и Telegram получает ошибку, после которой сам повторит доставку
+    public boolean trySubmit(Update update)
+    {
+        BlockingQueue<Task> queue = partitions[Math.floorMod(getChatId(update), PARTITION_COUNT)];
+        if (queue.offer(new Task(update)))
+        {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    // Чат, к которому относится обновление; для обновлений без чата используется id пользователя
+    static long getChatId(Update update)
+    {
+        if (update.hasMessage())
+        {
+            return update.getMessage().getChatId();
+        }
+        if (update.hasCallbackQuery())
+        {
+            return update.getCallbackQuery().getMessage() != null
+                    ? update.getCallbackQuery().getMessage().getChatId()
+                    : update.getCallbackQuery().getFrom().getId();
+        }
+        if (update.hasInlineQuery())
+        {
+            return update.getInlineQuery().getFrom().getId();
+        }
+        return update.getUpdateId() != null ? update.getUpdateId() : 0;
+    }
+
+    private void runWorker(BlockingQueue<Task> queue)
+    {
+        while (!Thread.currentThread().isInterrupted())
+        {
+            Task task;
+            try
+            {
+                task = queue.take();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            long startTime = System.nanoTime();
+            record(totalQueueNanos, maxQueueNanos, startTime - task.enqueuedAtNanos);
+            try
+            {
+                handler.accept(task.update);
+            }
+            catch (Exception e)
+            {
+                failed.increment();
+                logger.error("Ошибка при обработке обновления {}", task.update.getUpdateId(), e);
+            }
+            record(totalHandlerNanos, maxHandlerNanos, System.nanoTime() - startTime);
+
+            // Номер обработанного обновления получает ровно один поток, поэтому статистика
+            // пишется один раз на каждые STATS_LOG_EVERY обновлений
+            if (processed.incrementAndGet() % STATS_LOG_EVERY == 0)
+            {
+                logger.info("Обработка обновлений: {}", getStats());
+            }
+        }
+    }
+
+    private static void record(LongAdder total, AtomicLong max, long nanos)
+    {
+        total.add(nanos);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    public int getQueueDepth()
+    {
+        int depth = 0;
+        for (BlockingQueue<Task> queue : partitions)
+        {
+            depth += queue.size();
+        }
+        return depth;
+    }
+
+    public String getStats()
+    {
+        long count = processed.get();
+        double avgQueueMs = count == 0 ? 0 : totalQueueNanos.sum() / 1_000_000.0 / count;
+        double avgHandlerMs = count == 0 ? 0 : totalHandlerNanos.sum() / 1_000_000.0 / count;
+        return String.format("queue=%d, processed=%d, failed=%d, rejected=%d, " +
+                        "avgQueue=%.1fms, maxQueue=%.1fms, avgHandler=%.1fms, maxHandler=%.1fms",
+                getQueueDepth(), count, failed.sum(), rejected.sum(),
+                avgQueueMs, maxQueueNanos.get() / 1_000_000.0,
+                avgHandlerMs, maxHandlerNanos.get() / 1_000_000.0);
+    }
+}
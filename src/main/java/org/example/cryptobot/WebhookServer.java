@@ -0,0 +1,158 @@
+package org.example.cryptobot;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+// Прием обновлений Telegram через webhook вместо long polling.
+// Запрос разбирается, обновление ставится в очередь бота (UpdateDispatcher) без ожидания,
+// и только после этого Telegram получает 200 OK. Если очередь заполнена, ответ 503:
+// Telegram повторит доставку позже, а обновление не потеряется.
+public class WebhookServer
+{
+    private static final Logger logger = LoggerFactory.getLogger(WebhookServer.class);
+
+    private static final int HTTP_THREADS = 4;
+    // Заголовок с секретом, указанным при регистрации webhook
+    private static final String SECRET_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final int port;
+    private final String path;
+    private final String secret;
+    // Ставит обновление в очередь; false, если места нет
+    private final Predicate<Update> handler;
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder overloaded = new LongAdder();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public WebhookServer(int port, String path, String secret, Predicate<Update> handler)
+    {
+        this.port = port;
+        this.path = path;
+        this.secret = secret;
+        this.handler = handler;
+    }
+
+    public synchronized void start() throws IOException
+    {
+        if (server != null)
+        {
+            return;
+        }
+
+        // Сам HttpServer держит процесс запущенным, поэтому потоки обработки могут быть демонами
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext(path, this::handle);
+        executor = Executors.newFixedThreadPool(HTTP_THREADS, runnable ->
+        {
+            Thread thread = new Thread(runnable, "webhook-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.start();
+        logger.info("Webhook принимает обновления на порту {} по пути {}", port, path);
+    }
+
+    public synchronized void stop()
+    {
+        if (server != null)
+        {
+            server.stop(1);
+            executor.shutdown();
+            server = null;
+            executor = null;
+        }
+    }
+
+    // Фактический порт: при port = 0 сервер получает свободный порт от системы
+    public synchronized int getPort()
+    {
+        return server != null ? server.getAddress().getPort() : port;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException
+    {
+        try
+        {
+            if (!"POST".equals(exchange.getRequestMethod()))
+            {
+                respond(exchange, 405);
+                return;
+            }
+            if (!isSecretValid(exchange.getRequestHeaders().getFirst(SECRET_HEADER)))
+            {
+                rejected.increment();
+                respond(exchange, 401);
+                return;
+            }
+
+            Update update;
+            try (InputStream body = exchange.getRequestBody())
+            {
+                update = objectMapper.readValue(body, Update.class);
+            }
+            catch (IOException e)
+            {
+                rejected.increment();
+                logger.warn("Некорректное обновление в webhook: {}", e.getMessage());
+                respond(exchange, 400);
+                return;
+            }
+
+            // Подтверждаем получение после постановки в очередь, но до обработки: Telegram не ждет ответа бота
+            if (!handler.test(update))
+            {
+                overloaded.increment();
+                respond(exchange, 503);
+                return;
+            }
+            received.increment();
+            respond(exchange, 200);
+        }
+        finally
+        {
+            exchange.close();
+        }
+    }
+
+    private boolean isSecretValid(String provided)
+    {
+        if (secret == null || secret.isEmpty())
+        {
+            return true;
+        }
+        return provided != null && MessageDigest.isEqual(
+                secret.getBytes(StandardCharsets.UTF_8), provided.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void respond(HttpExchange exchange, int status) throws IOException
+    {
+        exchange.sendResponseHeaders(status, -1);
+    }
+
+    public String getStats()
+    {
+        return String.format("received=%d, rejected=%d, overloaded=%d", received.sum(), rejected.sum(), overloaded.sum());
+    }
+}
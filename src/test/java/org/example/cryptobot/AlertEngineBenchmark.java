@@ -0,0 +1,143 @@
+package org.example.cryptobot;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// AlertEngine на 1 000 000 синтетических алертов по 100 валютам: "выше", "ниже" и процентные
+// с окнами 1 ч, 4 ч и 1 д. Пороги лежат дальше 1% от базовой цены, проценты - от 2%.
+//  - quietTick: колебание цены в пределах 0,9%, ничего не срабатывает (обычный тик);
+//  - crossingTick: скачок на 1,5% вверх срабатывает около сотни алертов "выше", которые затем
+//    добавляются обратно, чтобы следующий вызов застал то же состояние;
+//  - linearScan: для сравнения - проверка каждого алерта валюты при каждом тике.
+// Запуск: mvn -Pjmh test -DskipTests -Djmh.args="AlertEngineBenchmark"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class AlertEngineBenchmark
+{
+    private static final int ALERTS = 1_000_000;
+    private static final int SYMBOLS = 100;
+    private static final double BASE_PRICE = 1000;
+    private static final int[] WINDOWS = {60, 240, 24 * 60};
+
+    private final List<PriceAlert> fired = new ArrayList<>();
+    private AlertEngine engine;
+    private String[] symbols;
+    private List<List<PriceAlert>> alertsBySymbol;
+    private Random random;
+    private long now;
+
+    @Setup
+    public void setUp()
+    {
+        symbols = new String[SYMBOLS];
+        alertsBySymbol = new ArrayList<>(SYMBOLS);
+        for (int s = 0; s < SYMBOLS; s++)
+        {
+            symbols[s] = "SYM" + s;
+            alertsBySymbol.add(new ArrayList<>(ALERTS / SYMBOLS));
+        }
+
+        List<PriceAlert> alerts = new ArrayList<>(ALERTS);
+        Random generator = new Random(42);
+        for (int id = 0; id < ALERTS; id++)
+        {
+            int s = id % SYMBOLS;
+            PriceAlert alert = syntheticAlert(id, symbols[s], generator);
+            alerts.add(alert);
+            alertsBySymbol.get(s).add(alert);
+        }
+
+        engine = new AlertEngine((alert, price, referencePrice) -> fired.add(alert));
+        engine.load(alerts);
+        random = new Random(7);
+        now = TimeUnit.DAYS.toMillis(20_000);
+
+        // Минута истории по каждой валюте, чтобы процентные алерты сравнивали цену с началом окна
+        for (int minute = 0; minute <= 24 * 60; minute++)
+        {
+            now += TimeUnit.MINUTES.toMillis(1);
+            for (String symbol : symbols)
+            {
+                engine.onPrice(symbol, quietPrice(), now);
+            }
+        }
+        if (!fired.isEmpty())
+        {
+            throw new IllegalStateException("Спокойные цены не должны вызывать алерты: " + fired.size());
+        }
+    }
+
+    private static PriceAlert syntheticAlert(long id, String symbol, Random generator)
+    {
+        int kind = generator.nextInt(20);
+        if (kind < 9)
+        {
+            return new PriceAlert(id, id, symbol, PriceAlert.Type.ABOVE,
+                    BASE_PRICE * (1.01 + generator.nextDouble() * 0.49), 0);
+        }
+        if (kind < 18)
+        {
+            return new PriceAlert(id, id, symbol, PriceAlert.Type.BELOW,
+                    BASE_PRICE * (0.5 + generator.nextDouble() * 0.49), 0);
+        }
+        return new PriceAlert(id, id, symbol, PriceAlert.Type.CHANGE,
+                2 + generator.nextDouble() * 48, WINDOWS[generator.nextInt(WINDOWS.length)]);
+    }
+
+    private double quietPrice()
+    {
+        return BASE_PRICE * (1 + (random.nextDouble() * 2 - 1) * 0.009);
+    }
+
+    @Benchmark
+    public int quietTick()
+    {
+        now += 1000;
+        engine.onPrice(symbols[random.nextInt(SYMBOLS)], quietPrice(), now);
+        return fired.size();
+    }
+
+    @Benchmark
+    public int crossingTick()
+    {
+        now += 1000;
+        engine.onPrice(symbols[random.nextInt(SYMBOLS)], BASE_PRICE * 1.015, now);
+        int count = fired.size();
+        for (PriceAlert alert : fired)
+        {
+            engine.add(alert);
+        }
+        fired.clear();
+        return count;
+    }
+
+    @Benchmark
+    public int linearScan()
+    {
+        double price = quietPrice();
+        int crossed = 0;
+        for (PriceAlert alert : alertsBySymbol.get(random.nextInt(SYMBOLS)))
+        {
+            switch (alert.getType())
+            {
+                case ABOVE:
+                    crossed += price >= alert.getThreshold() ? 1 : 0;
+                    break;
+                case BELOW:
+                    crossed += price <= alert.getThreshold() ? 1 : 0;
+                    break;
+                default:
+                    crossed += Math.abs(price - BASE_PRICE) / BASE_PRICE * 100 >= alert.getThreshold() ? 1 : 0;
+            }
+        }
+        return crossed;
+    }
+}
@@ -0,0 +1,151 @@
+package org.example.cryptobot;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Переходы состояний отсортированных массивов алертов: срабатывание префикса,
+// удаление после частичного срабатывания, уплотнение при добавлении и окно процентных алертов
+class AlertEngineTest
+{
+    private static final long START_MINUTE = 28_000_000;
+
+    private final List<String> fired = new ArrayList<>();
+    private final AlertEngine engine = new AlertEngine((alert, price, referencePrice) ->
+            fired.add(alert.getId() + "@" + referencePrice));
+
+    @Test
+    void thresholdAlertsFireWhenPriceReachesThresholdExactly()
+    {
+        engine.add(above(1, "BTC", 100));
+        engine.add(below(2, "BTC", 50));
+
+        engine.onPrice("BTC", 99.99, at(0));
+        engine.onPrice("BTC", 50.01, at(0));
+        assertTrue(fired.isEmpty());
+
+        engine.onPrice("BTC", 100, at(0));
+        assertEquals(List.of("1@100.0"), fired);
+        engine.onPrice("BTC", 50, at(0));
+        assertEquals(List.of("1@100.0", "2@50.0"), fired);
+
+        // Сработавшие алерты удалены, валюта больше не отслеживается
+        assertEquals(0, engine.size());
+        assertTrue(engine.getSymbols().isEmpty());
+    }
+
+    @Test
+    void removesAlertAfterPartOfArrayHasFired()
+    {
+        engine.add(above(1, "ETH", 100));
+        engine.add(above(2, "ETH", 110));
+        engine.add(above(3, "ETH", 120));
+        engine.add(above(4, "ETH", 130));
+
+        // Срабатывает префикс, начало массива сдвигается
+        engine.onPrice("ETH", 115, at(0));
+        assertEquals(List.of("1@100.0", "2@110.0"), fired);
+
+        assertFalse(engine.remove(1), "сработавший алерт уже удален");
+        assertTrue(engine.remove(3));
+        assertEquals(1, engine.size());
+
+        engine.onPrice("ETH", 125, at(0));
+        assertEquals(2, fired.size());
+        engine.onPrice("ETH", 130, at(0));
+        assertEquals(List.of("1@100.0", "2@110.0", "4@130.0"), fired);
+    }
+
+    @Test
+    void keepsOrderWhenAddingAfterFiredPrefixIsCompacted()
+    {
+        for (int i = 1; i <= 8; i++)
+        {
+            engine.add(above(i, "SOL", i * 10));
+        }
+        engine.onPrice("SOL", 60, at(0));
+        assertEquals(6, fired.size());
+        fired.clear();
+
+        // Места в конце нет, зато начало свободно: массив уплотняется, а не растет.
+        // Новые пороги попадают и перед оставшимися, и между ними, и после них
+        engine.add(above(9, "SOL", 65));
+        engine.add(above(10, "SOL", 75));
+        engine.add(above(11, "SOL", 90));
+        // Повторное добавление того же порога встает после равного
+        engine.add(above(12, "SOL", 70));
+        assertEquals(6, engine.size());
+
+        engine.onPrice("SOL", 75, at(0));
+        assertEquals(List.of("9@65.0", "7@70.0", "12@70.0", "10@75.0"), fired);
+        engine.onPrice("SOL", 1000, at(0));
+        assertEquals(List.of("9@65.0", "7@70.0", "12@70.0", "10@75.0", "8@80.0", "11@90.0"), fired);
+    }
+
+    @Test
+    void percentChangeUsesLastPriceBeforeWindowStartAcrossRestGap()
+    {
+        engine.add(change(1, "BTC", 5, 60));
+        engine.onPrice("BTC", 100, at(0));
+
+        // Цены не приходили 65 минут: начало окна (минута 5) берется из последней цены до нее (минута 0)
+        engine.onPrice("BTC", 104, at(65));
+        assertTrue(fired.isEmpty());
+        engine.onPrice("BTC", 106, at(66));
+        assertEquals(List.of("1@100.0"), fired);
+    }
+
+    @Test
+    void percentChangeWaitsWhenWindowStartIsBeyondGapTolerance()
+    {
+        engine.add(change(1, "BTC", 5, 60));
+        engine.onPrice("BTC", 100, at(0));
+
+        // Цена начала окна (минута 15) старше допустимого пропуска - сравнивать не с чем
+        engine.onPrice("BTC", 120, at(75));
+        assertTrue(fired.isEmpty());
+
+        // Через час после новой цены окно снова опирается на известную цену
+        engine.onPrice("BTC", 114, at(135));
+        assertEquals(List.of("1@120.0"), fired);
+    }
+
+    @Test
+    void percentChangeComparesWithWindowStartNotWithExtremes()
+    {
+        engine.add(change(1, "ETH", 5, 60));
+        engine.onPrice("ETH", 100, at(0));
+        // Всплеск внутри окна, вернувшийся к цене начала окна, алерт не вызывает
+        engine.onPrice("ETH", 110, at(30));
+        engine.onPrice("ETH", 101, at(60));
+        assertTrue(fired.isEmpty());
+
+        // Падение на 5% относительно цены часовой давности
+        engine.onPrice("ETH", 104.5, at(90));
+        assertEquals(List.of("1@110.0"), fired);
+    }
+
+    private static long at(int minute)
+    {
+        return TimeUnit.MINUTES.toMillis(START_MINUTE + minute);
+    }
+
+    private static PriceAlert above(long id, String symbol, double threshold)
+    {
+        return new PriceAlert(id, 1, symbol, PriceAlert.Type.ABOVE, threshold, 0);
+    }
+
+    private static PriceAlert below(long id, String symbol, double threshold)
+    {
+        return new PriceAlert(id, 1, symbol, PriceAlert.Type.BELOW, threshold, 0);
+    }
+
+    private static PriceAlert change(long id, String symbol, double percent, int windowMinutes)
+    {
+        return new PriceAlert(id, 1, symbol, PriceAlert.Type.CHANGE, percent, windowMinutes);
+    }
+}
@@ -0,0 +1,101 @@
+package org.example.cryptobot;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Непрерывность сохраненного диапазона свечей: полная загрузка окна после долгого
+// перерыва не должна оставлять старый "остров" свечей перед дырой
+class CandleStoreTest
+{
+    private static final long HOUR = 3600;
+    private static final long START = 1_700_000_000L / HOUR * HOUR;
+
+    private Path directory;
+    private ConnectionManager connections;
+    private CandleStore store;
+
+    @BeforeEach
+    void setUp() throws IOException, SQLException
+    {
+        directory = Files.createTempDirectory("candle-store-test");
+        connections = new ConnectionManager("jdbc:sqlite:" + directory.resolve("candles.db"));
+        connections.write(conn ->
+        {
+            try (Statement stmt = conn.getConnection().createStatement())
+            {
+                stmt.execute("CREATE TABLE candles (symbol TEXT NOT NULL, timeframe TEXT NOT NULL, " +
+                        "time INTEGER NOT NULL, open REAL, high REAL, low REAL, close REAL, volume REAL, " +
+                        "PRIMARY KEY (symbol, timeframe, time)) WITHOUT ROWID");
+            }
+            return null;
+        });
+        store = new CandleStore(connections);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException
+    {
+        connections.close();
+        try (Stream<Path> files = Files.walk(directory))
+        {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void incrementalSaveExtendsStoredRange() throws SQLException
+    {
+        store.saveWindow("BTC", "hour", hours(START, 10));
+        // Последняя свеча перезаписывается, следующие добавляются
+        store.save("BTC", "hour", hours(START + 9 * HOUR, 5));
+
+        CandleStore.StoredRange range = store.getStoredRange("BTC", "hour");
+        assertEquals(START, range.getFirstTime());
+        assertEquals(START + 13 * HOUR, range.getLastTime());
+        assertEquals(14, store.load("BTC", "hour", START).size());
+    }
+
+    @Test
+    void fullWindowAfterGapDropsOlderIsland() throws SQLException
+    {
+        store.saveWindow("BTC", "hour", hours(START, 10));
+        store.saveWindow("ETH", "hour", hours(START, 10));
+
+        // Через сутки простоя окно загружено заново; между островами была бы дыра в 14 часов
+        long later = START + 24 * HOUR;
+        store.saveWindow("BTC", "hour", hours(later, 10));
+
+        CandleStore.StoredRange range = store.getStoredRange("BTC", "hour");
+        assertEquals(later, range.getFirstTime());
+        assertEquals(later + 9 * HOUR, range.getLastTime());
+        HistoricalSeries series = store.load("BTC", "hour", START);
+        assertEquals(10, series.size());
+        assertEquals(later, series.getTime(0));
+
+        // Другие валюты не затрагиваются
+        assertEquals(START, store.getStoredRange("ETH", "hour").getFirstTime());
+    }
+
+    // count часовых свечей подряд, начиная с from
+    private static HistoricalSeries hours(long from, int count)
+    {
+        HistoricalSeries.Builder builder = new HistoricalSeries.Builder(count);
+        for (int i = 0; i < count; i++)
+        {
+            double price = 100 + i;
+            builder.add(from + i * HOUR, price, price + 1, price - 1, price + 0.5, 10);
+        }
+        return builder.build();
+    }
+}
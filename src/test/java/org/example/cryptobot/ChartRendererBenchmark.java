@@ -0,0 +1,216 @@
+package org.example.cryptobot;
+
+import com.google.gson.Gson;
+import mockwebserver3.Dispatcher;
+import mockwebserver3.MockResponse;
+import mockwebserver3.MockWebServer;
+import mockwebserver3.RecordedRequest;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.Buffer;
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.ImageIO;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Время отрисовки графика в PNG и размер результата.
+// 31 точка - обычный 30-дневный график, 720 - месяц по часам.
+// render - ChartRenderer; quickChart - прежний путь: URL generateQuickChartUrl и загрузка картинки
+// по нему. quickchart.io подменен локальным MockWebServer, поэтому время не включает ни сеть,
+// ни отрисовку на стороне сервиса - это нижняя граница прежнего пути. Сервер отдает записанный
+// ответ quickchart из -Dquickchart.png=путь, а без него - заглушку 500x300 (размер кадра quickchart
+// по умолчанию), и тогда размер ответа лишь ориентир.
+// Запуск: mvn -Pjmh test -DskipTests -Djmh.args="ChartRendererBenchmark"
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ChartRendererBenchmark
+{
+    @Param({"31", "720"})
+    public int points;
+
+    private final ChartRenderer renderer = new ChartRenderer();
+    private HistoricalSeries history;
+    private int lastSize;
+
+    private MockWebServer quickChart;
+    private OkHttpClient client;
+    private String quickChartBase;
+    private byte[] quickChartPng;
+    private String quickChartSource;
+    private int lastUrlLength;
+    private long lastDownloadSize;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        history = syntheticHistory(points, 42);
+
+        String recorded = System.getProperty("quickchart.png");
+        quickChartPng = recorded != null ? Files.readAllBytes(Path.of(recorded)) : standInPng(history);
+        quickChartSource = recorded != null ? "записанный ответ " + recorded : "заглушка 500x300";
+        quickChart = new MockWebServer();
+        quickChart.setDispatcher(new Dispatcher()
+        {
+            @Override
+            public MockResponse dispatch(RecordedRequest request)
+            {
+                return new MockResponse.Builder()
+                        .setHeader("Content-Type", "image/png")
+                        .body(new Buffer().write(quickChartPng))
+                        .build();
+            }
+        });
+        quickChart.start();
+        quickChartBase = quickChart.url("/").toString().replaceAll("/$", "");
+        client = new OkHttpClient();
+    }
+
+    @TearDown
+    public void stopQuickChart()
+    {
+        quickChart.close();
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+    }
+
+    @Benchmark
+    public byte[] render() throws IOException
+    {
+        byte[] png = renderer.renderLineChart("BTC", history);
+        lastSize = png.length;
+        return png;
+    }
+
+    // Прежний путь: подписи "dd.MM" и цены закрытия в JSON-конфигурацию, URL, загрузка PNG по URL
+    @Benchmark
+    public long quickChart() throws IOException
+    {
+        List<String> labels = new ArrayList<>(history.size());
+        List<Double> prices = new ArrayList<>(history.size());
+        HistoricalSeries.Cursor candle = history.cursor();
+        while (candle.next())
+        {
+            SimpleDateFormat sdf = new SimpleDateFormat("dd.MM");
+            labels.add(sdf.format(new Date(candle.time() * 1000)));
+            prices.add(candle.close());
+        }
+        String url = generateQuickChartUrl(quickChartBase, "BTC", labels, prices);
+        lastUrlLength = url.length();
+
+        try (Response response = client.newCall(new Request.Builder().url(url).build()).execute())
+        {
+            lastDownloadSize = response.body().bytes().length;
+        }
+        return lastDownloadSize;
+    }
+
+    // Размеры не зависят от итерации, поэтому выводятся один раз в конце
+    @TearDown
+    public void reportSize()
+    {
+        if (lastSize > 0)
+        {
+            System.out.printf("%nPNG для %d точек: %d байт%n", points, lastSize);
+        }
+        if (lastUrlLength > 0)
+        {
+            System.out.printf("%nquickchart для %d точек: URL %d символов, ответ %d байт (%s)%n",
+                    points, lastUrlLength, lastDownloadSize, quickChartSource);
+        }
+    }
+
+    // CryptoBot.generateQuickChartUrl до перехода на ChartRenderer; адрес сервиса - параметр
+    private static String generateQuickChartUrl(String baseUrl, String currency, List<String> labels, List<Double> prices)
+    {
+        String config = String.format(
+                "{type:'line',data:{labels:%s,datasets:[{label:'%s/USD',data:%s," +
+                        "borderColor:'#36A2EB',backgroundColor:'rgba(54,162,235,0.1)',fill:true}]}, " +
+                        "options:{responsive:true,maintainAspectRatio:false,scales:{y:{beginAtZero:false}}}}",
+                new Gson().toJson(labels),
+                currency,
+                new Gson().toJson(prices)
+        );
+        return baseUrl + "/chart?c=" + URLEncoder.encode(config, StandardCharsets.UTF_8);
+    }
+
+    // Заглушка ответа quickchart: линия цен на кадре 500x300 с заливкой под ней
+    private static byte[] standInPng(HistoricalSeries history) throws IOException
+    {
+        int width = 500;
+        int height = 300;
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        try
+        {
+            double min = Double.MAX_VALUE;
+            double max = -Double.MAX_VALUE;
+            for (int i = 0; i < history.size(); i++)
+            {
+                min = Math.min(min, history.getClose(i));
+                max = Math.max(max, history.getClose(i));
+            }
+            int[] xs = new int[history.size() + 2];
+            int[] ys = new int[history.size() + 2];
+            for (int i = 0; i < history.size(); i++)
+            {
+                xs[i] = 40 + (int) ((width - 60) * (double) i / Math.max(1, history.size() - 1));
+                ys[i] = 20 + (int) ((height - 60) * (max - history.getClose(i)) / Math.max(1e-9, max - min));
+            }
+            xs[history.size()] = xs[history.size() - 1];
+            ys[history.size()] = height - 40;
+            xs[history.size() + 1] = xs[0];
+            ys[history.size() + 1] = height - 40;
+
+            g.setColor(new Color(54, 162, 235, 25));
+            g.fillPolygon(xs, ys, xs.length);
+            g.setColor(new Color(54, 162, 235));
+            g.setStroke(new BasicStroke(3));
+            g.drawPolyline(xs, ys, history.size());
+        }
+        finally
+        {
+            g.dispose();
+        }
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+        return png.toByteArray();
+    }
+
+    // Случайное блуждание цены около 60000 с шагом в сутки
+    static HistoricalSeries syntheticHistory(int points, long seed)
+    {
+        Random random = new Random(seed);
+        HistoricalSeries.Builder builder = new HistoricalSeries.Builder(points);
+        long time = 1_700_000_000L;
+        double price = 60_000;
+        for (int i = 0; i < points; i++)
+        {
+            double open = price;
+            price *= 1 + random.nextGaussian() * 0.02;
+            double high = Math.max(open, price) * (1 + random.nextDouble() * 0.01);
+            double low = Math.min(open, price) * (1 - random.nextDouble() * 0.01);
+            builder.add(time + i * 86_400L, open, high, low, price, random.nextDouble() * 1_000);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,130 @@
+package org.example.cryptobot;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+// Ответ coinlist?summary=true для тестов справочника символов: настоящие монеты с похожими
+// символами и названиями ("Bitcoin Cash", "Wrapped Bitcoin", "ETHW", "SOLO") плюс синтетические
+// до нужного размера. Генерация детерминирована, поэтому результаты поиска воспроизводимы.
+final class CoinListFixtures
+{
+    // Около стольких монет в реальном ответе coinlist
+    static final int COIN_COUNT = 10_000;
+
+    private static final String[][] REAL_COINS = {
+            {"BTC", "Bitcoin"}, {"BCH", "Bitcoin Cash"}, {"BSV", "Bitcoin SV"}, {"BTG", "Bitcoin Gold"},
+            {"WBTC", "Wrapped Bitcoin"}, {"BTCB", "Bitcoin BEP2"}, {"TBTC", "tBTC"},
+            {"ETH", "Ethereum"}, {"ETC", "Ethereum Classic"}, {"ETHW", "EthereumPoW"}, {"ETHFI", "Ether.fi"},
+            {"STETH", "Lido Staked ETH"}, {"WETH", "WETH"}, {"ETHDYDX", "ETH 2x Flexible Leverage Index"},
+            {"SOL", "Solana"}, {"SOLO", "Sologenic"}, {"SOLVE", "SOLVE"}, {"MSOL", "Marinade staked SOL"},
+            {"SLND", "Solend"}, {"SOLAMA", "Solama"},
+            {"USDT", "Tether"}, {"USDC", "USD Coin"}, {"BNB", "BNB"}, {"XRP", "XRP"}, {"ADA", "Cardano"},
+            {"DOGE", "Dogecoin"}, {"DOT", "Polkadot"}, {"LTC", "Litecoin"}, {"LINK", "Chainlink"},
+            {"TON", "Toncoin"}, {"TRX", "TRON"}, {"AVAX", "Avalanche"}, {"MATIC", "Polygon"},
+    };
+
+    private static final String[] SYLLABLES = {
+            "ka", "zu", "mo", "rex", "vi", "lo", "qua", "tor", "ny", "pex", "gri", "dal", "fen", "hu",
+            "jar", "ko", "lum", "mir", "nov", "pra", "quo", "ryn", "sy", "tek", "ur", "vox", "wyl", "xen",
+    };
+
+    private CoinListFixtures()
+    {
+    }
+
+    // Справочник, загруженный из ответа coinlist на count монет
+    static SymbolRegistry registry(int count)
+    {
+        SymbolRegistry registry = new SymbolRegistry();
+        try
+        {
+            registry.load(new StringReader(coinList(count)));
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        return registry;
+    }
+
+    // Data: {"BTC": {"Id": "1182", "Symbol": "BTC", "FullName": "Bitcoin (BTC)"}, ...}
+    static String coinList(int count)
+    {
+        StringBuilder json = new StringBuilder(count * 64).append("{\"Response\":\"Success\",\"Data\":{");
+        Set<String> symbols = new HashSet<>();
+        int id = 1000;
+        for (String[] coin : REAL_COINS)
+        {
+            symbols.add(coin[0]);
+            appendCoin(json, id++, coin[0], coin[1]);
+        }
+
+        Random random = new Random(2024);
+        while (symbols.size() < count)
+        {
+            String symbol = randomSymbol(random);
+            if (symbols.add(symbol))
+            {
+                appendCoin(json, id++, symbol, randomName(random));
+            }
+        }
+        return json.append("}}").toString();
+    }
+
+    private static void appendCoin(StringBuilder json, int id, String symbol, String name)
+    {
+        if (json.charAt(json.length() - 1) != '{')
+        {
+            json.append(',');
+        }
+        json.append('"').append(symbol).append("\":{\"Id\":\"").append(id)
+                .append("\",\"Symbol\":\"").append(symbol)
+                .append("\",\"FullName\":\"").append(name).append(" (").append(symbol).append(")\"}");
+    }
+
+    private static String randomSymbol(Random random)
+    {
+        int length = 3 + random.nextInt(3);
+        StringBuilder symbol = new StringBuilder(length);
+        for (int i = 0; i < length; i++)
+        {
+            symbol.append((char) ('A' + random.nextInt(26)));
+        }
+        return symbol.toString();
+    }
+
+    // Одно-два слова из слогов; иногда с обычными для монет словами "Coin", "Token", "Finance"
+    private static String randomName(Random random)
+    {
+        StringBuilder name = new StringBuilder();
+        int words = 1 + random.nextInt(2);
+        for (int w = 0; w < words; w++)
+        {
+            if (w > 0)
+            {
+                name.append(' ');
+            }
+            int syllables = 2 + random.nextInt(2);
+            for (int s = 0; s < syllables; s++)
+            {
+                String syllable = SYLLABLES[random.nextInt(SYLLABLES.length)];
+                name.append(s == 0 ? Character.toUpperCase(syllable.charAt(0)) + syllable.substring(1) : syllable);
+            }
+        }
+        switch (random.nextInt(6))
+        {
+            case 0:
+                return name.append(" Coin").toString();
+            case 1:
+                return name.append(" Token").toString();
+            case 2:
+                return name.append(" Finance").toString();
+            default:
+                return name.toString();
+        }
+    }
+}
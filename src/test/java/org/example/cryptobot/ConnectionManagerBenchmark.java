@@ -0,0 +1,157 @@
+package org.example.cryptobot;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Запросы DatabaseHelper до и после ConnectionManager:
+// perCall* - как было раньше, новое соединение с базой и prepareStatement на каждый вызов;
+// managed* - общее соединение из ConnectionManager с кэшем подготовленных запросов и WAL.
+// Базы разные: режим WAL сохраняется в файле и изменил бы поведение "старого" варианта.
+// Запуск: mvn -Pjmh test -DskipTests -Djmh.args="ConnectionManagerBenchmark"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConnectionManagerBenchmark
+{
+    private static final String SELECT_FAVORITE = "SELECT 1 FROM user_currencies WHERE user_id = ? AND currency = ?";
+    private static final String INSERT_FAVORITE = "INSERT OR REPLACE INTO user_currencies(user_id, currency) VALUES(?, ?)";
+    private static final String[] CURRENCIES = {"BTC", "ETH", "SOL", "XRP", "ADA", "DOGE", "TON", "BNB"};
+    private static final int USERS = 1000;
+
+    private Path directory;
+    private String perCallUrl;
+    private ConnectionManager connections;
+    private long counter;
+
+    @Setup
+    public void setUp() throws IOException, SQLException
+    {
+        directory = Files.createTempDirectory("connection-benchmark");
+        perCallUrl = "jdbc:sqlite:" + directory.resolve("per-call.db");
+        String managedUrl = "jdbc:sqlite:" + directory.resolve("managed.db");
+
+        fill(perCallUrl);
+        fill(managedUrl);
+        connections = new ConnectionManager(managedUrl);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        connections.close();
+        try (Stream<Path> files = Files.walk(directory))
+        {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public boolean perCallRead() throws SQLException
+    {
+        long userId = nextUser();
+        try (Connection conn = DriverManager.getConnection(perCallUrl);
+             PreparedStatement stmt = conn.prepareStatement(SELECT_FAVORITE))
+        {
+            stmt.setLong(1, userId);
+            stmt.setString(2, currencyFor(userId));
+            try (ResultSet rs = stmt.executeQuery())
+            {
+                return rs.next();
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean managedRead() throws SQLException
+    {
+        long userId = nextUser();
+        return connections.read(conn ->
+        {
+            PreparedStatement stmt = conn.prepare(SELECT_FAVORITE);
+            stmt.setLong(1, userId);
+            stmt.setString(2, currencyFor(userId));
+            try (ResultSet rs = stmt.executeQuery())
+            {
+                return rs.next();
+            }
+        });
+    }
+
+    @Benchmark
+    public int perCallWrite() throws SQLException
+    {
+        long userId = nextUser();
+        try (Connection conn = DriverManager.getConnection(perCallUrl);
+             PreparedStatement stmt = conn.prepareStatement(INSERT_FAVORITE))
+        {
+            stmt.setLong(1, userId);
+            stmt.setString(2, currencyFor(userId));
+            return stmt.executeUpdate();
+        }
+    }
+
+    @Benchmark
+    public int managedWrite() throws SQLException
+    {
+        long userId = nextUser();
+        return connections.write(conn ->
+        {
+            PreparedStatement stmt = conn.prepare(INSERT_FAVORITE);
+            stmt.setLong(1, userId);
+            stmt.setString(2, currencyFor(userId));
+            return stmt.executeUpdate();
+        });
+    }
+
+    private long nextUser()
+    {
+        return counter++ % USERS;
+    }
+
+    private static String currencyFor(long userId)
+    {
+        return CURRENCIES[(int) (userId % CURRENCIES.length)];
+    }
+
+    // Та же таблица, что создает DatabaseHelper, по несколько избранных валют на пользователя
+    private static void fill(String url) throws SQLException
+    {
+        try (Connection conn = DriverManager.getConnection(url))
+        {
+            try (Statement stmt = conn.createStatement())
+            {
+                stmt.execute("CREATE TABLE user_currencies (user_id INTEGER NOT NULL, currency TEXT NOT NULL, PRIMARY KEY(user_id, currency))");
+            }
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(INSERT_FAVORITE))
+            {
+                for (long userId = 0; userId < USERS; userId++)
+                {
+                    for (int i = 0; i < 3; i++)
+                    {
+                        stmt.setLong(1, userId);
+                        stmt.setString(2, CURRENCIES[(int) ((userId + i) % CURRENCIES.length)]);
+                        stmt.addBatch();
+                    }
+                }
+                stmt.executeBatch();
+            }
+            conn.commit();
+        }
+    }
+}
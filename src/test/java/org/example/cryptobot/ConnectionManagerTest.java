@@ -0,0 +1,99 @@
+package org.example.cryptobot;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Кэш подготовленных запросов: пакет, не выполненный из-за ошибки, не должен
+// попасть в следующий вызов того же запроса
+class ConnectionManagerTest
+{
+    private static final String UPDATE_LAST_NOTIFICATION =
+            "UPDATE notifications SET last_notification = ? WHERE user_id = ? AND currency = ?";
+
+    private Path directory;
+    private ConnectionManager connections;
+
+    @BeforeEach
+    void setUp() throws IOException, SQLException
+    {
+        directory = Files.createTempDirectory("connection-manager-test");
+        connections = new ConnectionManager("jdbc:sqlite:" + directory.resolve("bot.db"));
+        connections.write(conn ->
+        {
+            try (Statement stmt = conn.getConnection().createStatement())
+            {
+                stmt.execute("CREATE TABLE notifications (user_id INTEGER, currency TEXT, " +
+                        "interval_minutes INTEGER, last_notification INTEGER, PRIMARY KEY (user_id, currency))");
+                stmt.execute("INSERT INTO notifications VALUES (1, 'BTC', 60, 0), (2, 'ETH', 60, 0)");
+            }
+            return null;
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws IOException
+    {
+        connections.close();
+        try (Stream<Path> files = Files.walk(directory))
+        {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void failedBatchIsNotReplayedByNextCaller() throws SQLException
+    {
+        // Пакет собран, но транзакция прервалась до executeBatch
+        assertThrows(SQLException.class, () -> connections.writeInTransaction(conn ->
+        {
+            PreparedStatement stmt = conn.prepare(UPDATE_LAST_NOTIFICATION);
+            stmt.setLong(1, 100);
+            stmt.setLong(2, 1);
+            stmt.setString(3, "BTC");
+            stmt.addBatch();
+            throw new SQLException("сбой при подготовке пакета");
+        }));
+
+        // Следующий вызов обновляет только свою строку; старое время для BTC не записывается
+        connections.writeInTransaction(conn ->
+        {
+            PreparedStatement stmt = conn.prepare(UPDATE_LAST_NOTIFICATION);
+            stmt.setLong(1, 200);
+            stmt.setLong(2, 2);
+            stmt.setString(3, "ETH");
+            stmt.addBatch();
+            return stmt.executeBatch();
+        });
+
+        assertEquals(0, lastNotification(1, "BTC"));
+        assertEquals(200, lastNotification(2, "ETH"));
+    }
+
+    private long lastNotification(long userId, String currency) throws SQLException
+    {
+        return connections.read(conn ->
+        {
+            PreparedStatement stmt = conn.prepare(
+                    "SELECT last_notification FROM notifications WHERE user_id = ? AND currency = ?");
+            stmt.setLong(1, userId);
+            stmt.setString(2, currency);
+            try (ResultSet rs = stmt.executeQuery())
+            {
+                return rs.next() ? rs.getLong(1) : -1;
+            }
+        });
+    }
+}
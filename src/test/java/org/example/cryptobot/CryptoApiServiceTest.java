@@ -0,0 +1,225 @@
+package org.example.cryptobot;
+
+import mockwebserver3.Dispatcher;
+import mockwebserver3.MockResponse;
+import mockwebserver3.MockWebServer;
+import mockwebserver3.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Защита от сбоев API цен на локальном фейковом CryptoCompare: предохранитель,
+// дублирующие запросы и устаревшие цены. Время кэша и предохранителя управляется тестом
+class CryptoApiServiceTest
+{
+    private final AtomicLong clock = new AtomicLong(1_700_000_000_000L);
+    private final FakeCryptoCompare upstream = new FakeCryptoCompare();
+    private MockWebServer server;
+    private CryptoApiService service;
+
+    @BeforeEach
+    void setUp() throws IOException
+    {
+        server = new MockWebServer();
+        server.setDispatcher(upstream);
+        server.start();
+        String baseUrl = server.url("/").toString().replaceAll("/$", "");
+        service = new CryptoApiService(null, baseUrl, clock::get);
+    }
+
+    @AfterEach
+    void tearDown()
+    {
+        server.close();
+    }
+
+    @Test
+    void circuitBreakerOpensAfterFailuresAndClosesAfterSuccessfulTrial() throws Exception
+    {
+        upstream.respond(request -> error(500));
+        for (int i = 0; i < 5; i++)
+        {
+            assertFails(service.getQuoteAsync("ERR" + i));
+        }
+        assertTrue(service.getResilienceStats().startsWith("предохранитель OPEN"), service.getResilienceStats());
+
+        // Открытый предохранитель отклоняет запрос сразу, не обращаясь к API
+        int requestsBefore = server.getRequestCount();
+        assertInstanceOf(CircuitBreaker.OpenException.class, assertFails(service.getQuoteAsync("BTC")));
+        assertEquals(requestsBefore, server.getRequestCount());
+
+        // Через 30 секунд пропускается один пробный запрос; его ошибка снова открывает предохранитель
+        clock.addAndGet(TimeUnit.SECONDS.toMillis(30));
+        assertFails(service.getQuoteAsync("BTC"));
+        assertEquals(requestsBefore + 1, server.getRequestCount());
+        assertTrue(service.getResilienceStats().startsWith("предохранитель OPEN"), service.getResilienceStats());
+
+        // Пока пробный запрос выполняется, предохранитель полуоткрыт и остальные запросы отклоняются
+        clock.addAndGet(TimeUnit.SECONDS.toMillis(30));
+        upstream.respond(request -> price(64_000).headersDelay(500, TimeUnit.MILLISECONDS).build());
+        CompletableFuture<PriceQuote> trial = service.getQuoteAsync("BTC");
+        waitForRequests(requestsBefore + 2);
+        assertTrue(service.getResilienceStats().startsWith("предохранитель HALF_OPEN"), service.getResilienceStats());
+        assertInstanceOf(CircuitBreaker.OpenException.class, assertFails(service.getQuoteAsync("ETH")));
+
+        // Успешный пробный запрос закрывает предохранитель
+        assertEquals(64_000, trial.get(5, TimeUnit.SECONDS).getPrice());
+        assertTrue(service.getResilienceStats().startsWith("предохранитель CLOSED"), service.getResilienceStats());
+        upstream.respond(request -> price(3_000).build());
+        assertEquals(3_000, service.getQuoteAsync("ETH").get(5, TimeUnit.SECONDS).getPrice());
+    }
+
+    @Test
+    void hedgedRequestWinsWhenPrimaryIsSlow() throws Exception
+    {
+        // Задержки быстрых ответов задают порог дублирования (не меньше 100 мс)
+        upstream.respond(request -> price(1).build());
+        for (int i = 0; i < 20; i++)
+        {
+            service.getQuoteAsync("WARM" + i).get(5, TimeUnit.SECONDS);
+        }
+        service.setHedgingEnabled(true);
+
+        List<String> published = new CopyOnWriteArrayList<>();
+        service.addPriceListener((symbol, price) -> published.add(symbol + "=" + price));
+
+        // Первый запрос BTC "зависает", дубль отвечает сразу
+        AtomicInteger btcRequests = new AtomicInteger();
+        upstream.respond(request -> btcRequests.incrementAndGet() == 1
+                ? price(60_000).headersDelay(3, TimeUnit.SECONDS).build()
+                : price(61_000).build());
+
+        long start = System.nanoTime();
+        PriceQuote quote = service.getQuoteAsync("BTC").get(5, TimeUnit.SECONDS);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(61_000, quote.getPrice());
+        assertTrue(elapsedMillis < 2000, "ответ ждал медленный запрос: " + elapsedMillis + " мс");
+        assertEquals(2, btcRequests.get());
+        // Победа дубля засчитывается сразу после того, как его цена передана вызывающему
+        waitForStats("дублей 1 (выиграли 1)");
+
+        // Кэш и получатели цен обновлены один раз, ценой выигравшего запроса
+        assertEquals(List.of("BTC=61000.0"), published);
+        assertEquals(61_000, service.getQuoteAsync("BTC").get(5, TimeUnit.SECONDS).getPrice());
+        assertEquals(2, btcRequests.get());
+    }
+
+    @Test
+    void servesStalePriceWhileRevalidatingAndWhenApiFails() throws Exception
+    {
+        upstream.respond(request -> price(50_000).build());
+        assertEquals(50_000, service.getQuoteAsync("BTC").get(5, TimeUnit.SECONDS).getPrice());
+
+        // Кэш истек недавно: старая цена отдается сразу, новая загружается в фоне
+        clock.addAndGet(TimeUnit.MINUTES.toMillis(7));
+        upstream.respond(request -> price(51_000).build());
+        PriceQuote revalidating = service.getQuoteAsync("BTC").get(5, TimeUnit.SECONDS);
+        assertTrue(revalidating.isStale());
+        assertEquals(50_000, revalidating.getPrice());
+        waitForRequests(2);
+        waitForFreshPrice("BTC", 51_000);
+
+        // API недоступен: отдается последняя известная цена с ее возрастом
+        clock.addAndGet(TimeUnit.MINUTES.toMillis(20));
+        upstream.respond(request -> error(503));
+        PriceQuote fallback = service.getQuoteAsync("BTC").get(5, TimeUnit.SECONDS);
+        assertTrue(fallback.isStale());
+        assertEquals(51_000, fallback.getPrice());
+        assertEquals(TimeUnit.MINUTES.toMillis(20), fallback.getAgeMillis());
+
+        // Цена старше часа уже не годится даже как запасная
+        clock.addAndGet(TimeUnit.HOURS.toMillis(1));
+        assertFails(service.getQuoteAsync("BTC"));
+    }
+
+    // Запрос завершился ошибкой; возвращается исходная причина
+    private static Throwable assertFails(CompletableFuture<?> future)
+    {
+        ExecutionException error = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        return rootCause(error);
+    }
+
+    private void waitForRequests(int count) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (server.getRequestCount() < count && System.nanoTime() < deadline)
+        {
+            Thread.sleep(5);
+        }
+        assertTrue(server.getRequestCount() >= count, "API не получил ожидаемый запрос");
+    }
+
+    private void waitForStats(String expected) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!service.getResilienceStats().contains(expected) && System.nanoTime() < deadline)
+        {
+            Thread.sleep(5);
+        }
+        assertTrue(service.getResilienceStats().contains(expected), service.getResilienceStats());
+    }
+
+    private void waitForFreshPrice(String symbol, double expected) throws Exception
+    {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        PriceQuote quote = service.getQuoteAsync(symbol).get(5, TimeUnit.SECONDS);
+        while ((quote.isStale() || quote.getPrice() != expected) && System.nanoTime() < deadline)
+        {
+            Thread.sleep(5);
+            quote = service.getQuoteAsync(symbol).get(5, TimeUnit.SECONDS);
+        }
+        assertFalse(quote.isStale());
+        assertEquals(expected, quote.getPrice());
+    }
+
+    private static Throwable rootCause(Throwable error)
+    {
+        while (error.getCause() != null && error.getCause() != error)
+        {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    private static MockResponse.Builder price(double usd)
+    {
+        return new MockResponse.Builder()
+                .setHeader("Content-Type", "application/json")
+                .body("{\"USD\":" + usd + "}");
+    }
+
+    private static MockResponse error(int code)
+    {
+        return new MockResponse.Builder().code(code).body("{\"Response\":\"Error\"}").build();
+    }
+
+    // Фейковый CryptoCompare: ответ на каждый запрос задает текущий сценарий теста
+    private static class FakeCryptoCompare extends Dispatcher
+    {
+        private volatile Function<RecordedRequest, MockResponse> handler = request -> error(500);
+
+        void respond(Function<RecordedRequest, MockResponse> handler)
+        {
+            this.handler = handler;
+        }
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request)
+        {
+            return handler.apply(request);
+        }
+    }
+}
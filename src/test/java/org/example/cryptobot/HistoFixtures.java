@@ -0,0 +1,69 @@
+package org.example.cryptobot;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+// Ответы histoday/histohour/histominute из src/test/resources/histo и прежний разбор через org.json
+final class HistoFixtures
+{
+    static final String DAY = "histoday-btc-30.json";
+    static final String HOUR = "histohour-btc-720.json";
+    static final String MINUTE = "histominute-btc-2000.json";
+
+    private HistoFixtures()
+    {
+    }
+
+    static byte[] load(String name)
+    {
+        try (InputStream in = HistoFixtures.class.getResourceAsStream("/histo/" + name))
+        {
+            if (in == null)
+            {
+                throw new IllegalArgumentException("Нет фикстуры " + name);
+            }
+            return in.readAllBytes();
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Разбор, которым fetchHistoricalData пользовался до HistoResponseParser: весь ответ строкой
+    // и дерево JSONObject. Результат собирается в тот же HistoricalSeries, чтобы сравнивать только разбор
+    static HistoricalSeries parseWithJsonObject(String responseBody, int expectedSize) throws IOException
+    {
+        JSONObject json = new JSONObject(responseBody);
+
+        if (json.has("Response") && "Error".equals(json.getString("Response")))
+        {
+            throw new IOException("API error: " + json.getString("Message"));
+        }
+
+        if (json.has("Data") && json.getJSONObject("Data").has("Data"))
+        {
+            HistoricalSeries.Builder builder = new HistoricalSeries.Builder(expectedSize);
+            JSONArray data = json.getJSONObject("Data").getJSONArray("Data");
+            for (int i = 0; i < data.length(); i++)
+            {
+                JSONObject item = data.getJSONObject(i);
+                builder.add(
+                        item.getLong("time"),
+                        item.getDouble("open"),
+                        item.getDouble("high"),
+                        item.getDouble("low"),
+                        item.getDouble("close"),
+                        item.getDouble("volumefrom")
+                );
+            }
+            return builder.build();
+        }
+
+        throw new IOException("Unexpected API response structure: " + responseBody);
+    }
+}
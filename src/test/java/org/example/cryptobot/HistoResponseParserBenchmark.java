@@ -0,0 +1,52 @@
+package org.example.cryptobot;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// Разбор ответа histo: потоковый HistoResponseParser против прежнего дерева JSONObject.
+// Оба варианта начинают с байтов ответа, как они приходят из сети: прежний путь собирал
+// из них строку (body().string()), новый читает поток символов.
+// Выделение памяти: mvn -Pjmh test -DskipTests -Djmh.args="HistoResponseParserBenchmark -prof gc"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistoResponseParserBenchmark
+{
+    @Param({HistoFixtures.DAY, HistoFixtures.HOUR, HistoFixtures.MINUTE})
+    public String fixture;
+
+    private byte[] response;
+    private int expectedSize;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        response = HistoFixtures.load(fixture);
+        expectedSize = HistoResponseParser.parse(reader(), 0).size();
+    }
+
+    @Benchmark
+    public HistoricalSeries streaming() throws IOException
+    {
+        return HistoResponseParser.parse(reader(), expectedSize);
+    }
+
+    @Benchmark
+    public HistoricalSeries jsonObject() throws IOException
+    {
+        return HistoFixtures.parseWithJsonObject(new String(response, StandardCharsets.UTF_8), expectedSize);
+    }
+
+    private InputStreamReader reader()
+    {
+        return new InputStreamReader(new ByteArrayInputStream(response), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,53 @@
+package org.example.cryptobot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistoResponseParserTest
+{
+    @ParameterizedTest
+    @ValueSource(strings = {HistoFixtures.DAY, HistoFixtures.HOUR, HistoFixtures.MINUTE})
+    void matchesJsonObjectParsing(String fixture) throws IOException
+    {
+        String body = new String(HistoFixtures.load(fixture), StandardCharsets.UTF_8);
+
+        HistoricalSeries expected = HistoFixtures.parseWithJsonObject(body, 0);
+        HistoricalSeries actual = HistoResponseParser.parse(new StringReader(body), 0);
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++)
+        {
+            assertEquals(expected.getTime(i), actual.getTime(i));
+            assertEquals(expected.getOpen(i), actual.getOpen(i));
+            assertEquals(expected.getHigh(i), actual.getHigh(i));
+            assertEquals(expected.getLow(i), actual.getLow(i));
+            assertEquals(expected.getClose(i), actual.getClose(i));
+            assertEquals(expected.getVolume(i), actual.getVolume(i));
+        }
+    }
+
+    @Test
+    void reportsApiError()
+    {
+        String body = "{\"Response\":\"Error\",\"Message\":\"fsym param is invalid\",\"HasWarning\":false,\"Type\":2," +
+                "\"RateLimit\":{},\"Data\":{}}";
+
+        IOException error = assertThrows(IOException.class, () -> HistoResponseParser.parse(new StringReader(body), 31));
+        assertEquals("API error: fsym param is invalid", error.getMessage());
+    }
+
+    @Test
+    void rejectsResponseWithoutCandles()
+    {
+        String body = "{\"Response\":\"Success\",\"Message\":\"\",\"Data\":{\"Aggregated\":false}}";
+
+        assertThrows(IOException.class, () -> HistoResponseParser.parse(new StringReader(body), 31));
+    }
+}
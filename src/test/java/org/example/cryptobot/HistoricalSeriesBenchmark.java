@@ -0,0 +1,148 @@
+package org.example.cryptobot;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// HistoricalSeries против прежнего List<HistoricalData> на 2001 минутной свече:
+// ответ из кэша истории (последние limit + 1 свечей и проход по ним, как при отрисовке графика)
+// и построение ряда при разборе ответа. Прежний вариант воспроизведен здесь как LegacyCandle.
+// Главное - выделение памяти: mvn -Pjmh test -DskipTests -Djmh.args="HistoricalSeriesBenchmark -prof gc"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistoricalSeriesBenchmark
+{
+    @Param({"30", "720"})
+    public int limit;
+
+    private HistoricalSeries series;
+    private List<LegacyCandle> legacy;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        String body = new String(HistoFixtures.load(HistoFixtures.MINUTE), StandardCharsets.UTF_8);
+        series = HistoResponseParser.parse(new StringReader(body), 0);
+
+        List<LegacyCandle> candles = new ArrayList<>(series.size());
+        for (int i = 0; i < series.size(); i++)
+        {
+            candles.add(new LegacyCandle(series.getTime(i), series.getOpen(i), series.getHigh(i),
+                    series.getLow(i), series.getClose(i), series.getVolume(i)));
+        }
+        legacy = Collections.unmodifiableList(candles);
+    }
+
+    // CachedHistory.tail: срез без копирования и проход курсором
+    @Benchmark
+    public double seriesCacheHit()
+    {
+        HistoricalSeries.Cursor candle = series.tail(limit + 1).cursor();
+        double range = 0;
+        while (candle.next())
+        {
+            range += candle.high() - candle.low();
+        }
+        return range;
+    }
+
+    // Прежний CachedHistory.tail: копия подсписка в новый ArrayList и проход по объектам свечей
+    @Benchmark
+    public double legacyCacheHit()
+    {
+        int count = Math.min(legacy.size(), limit + 1);
+        List<LegacyCandle> tail = new ArrayList<>(legacy.subList(legacy.size() - count, legacy.size()));
+        double range = 0;
+        for (LegacyCandle candle : tail)
+        {
+            range += candle.getHigh() - candle.getLow();
+        }
+        return range;
+    }
+
+    // Построение ряда из 2001 свечи, как при разборе ответа histominute
+    @Benchmark
+    public HistoricalSeries seriesBuild()
+    {
+        HistoricalSeries.Builder builder = new HistoricalSeries.Builder(series.size());
+        for (int i = 0; i < series.size(); i++)
+        {
+            builder.add(series.getTime(i), series.getOpen(i), series.getHigh(i),
+                    series.getLow(i), series.getClose(i), series.getVolume(i));
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public List<LegacyCandle> legacyBuild()
+    {
+        List<LegacyCandle> candles = new ArrayList<>();
+        for (int i = 0; i < series.size(); i++)
+        {
+            candles.add(new LegacyCandle(series.getTime(i), series.getOpen(i), series.getHigh(i),
+                    series.getLow(i), series.getClose(i), series.getVolume(i)));
+        }
+        return candles;
+    }
+
+    // Копия удаленного CryptoApiService.HistoricalData: отдельный объект на каждую свечу
+    public static final class LegacyCandle
+    {
+        private final long timestamp;
+        private final double open;
+        private final double high;
+        private final double low;
+        private final double close;
+        private final double volume;
+
+        LegacyCandle(long timestamp, double open, double high, double low, double close, double volume)
+        {
+            this.timestamp = timestamp;
+            this.open = open;
+            this.high = high;
+            this.low = low;
+            this.close = close;
+            this.volume = volume;
+        }
+
+        public long getTimestamp()
+        {
+            return timestamp;
+        }
+
+        public double getOpen()
+        {
+            return open;
+        }
+
+        public double getHigh()
+        {
+            return high;
+        }
+
+        public double getLow()
+        {
+            return low;
+        }
+
+        public double getClose()
+        {
+            return close;
+        }
+
+        public double getVolume()
+        {
+            return volume;
+        }
+    }
+}
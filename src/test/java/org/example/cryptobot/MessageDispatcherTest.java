@@ -0,0 +1,203 @@
+package org.example.cryptobot;
+
+import mockwebserver3.Dispatcher;
+import mockwebserver3.MockResponse;
+import mockwebserver3.MockWebServer;
+import mockwebserver3.RecordedRequest;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.bots.DefaultAbsSender;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// MessageDispatcher с настоящим клиентом Telegram, направленным на локальный фейковый Bot API:
+// сервер записывает время каждого sendMessage и по заданию отвечает 429 с retry_after
+class MessageDispatcherTest
+{
+    private static final String OK_RESPONSE =
+            "{\"ok\":true,\"result\":{\"message_id\":1,\"date\":0,\"chat\":{\"id\":1,\"type\":\"private\"},\"text\":\"x\"}}";
+    private static final String TOO_MANY_REQUESTS =
+            "{\"ok\":false,\"error_code\":429,\"description\":\"Too Many Requests: retry after 1\"," +
+                    "\"parameters\":{\"retry_after\":1}}";
+
+    private final FakeTelegram telegram = new FakeTelegram();
+    private MockWebServer server;
+    private MessageDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() throws IOException
+    {
+        server = new MockWebServer();
+        server.setDispatcher(telegram);
+        server.start();
+
+        DefaultBotOptions options = new DefaultBotOptions();
+        options.setBaseUrl(server.url("/bot").toString());
+        DefaultAbsSender client = new DefaultAbsSender(options, "test-token")
+        {
+        };
+        dispatcher = new MessageDispatcher(client::execute);
+    }
+
+    @AfterEach
+    void tearDown()
+    {
+        server.close();
+    }
+
+    @Test
+    void sendsOneMessagePerSecondToTheSameChat() throws InterruptedException
+    {
+        telegram.expect(3);
+        for (int i = 0; i < 3; i++)
+        {
+            dispatcher.submit(message(42, "сообщение " + i));
+        }
+
+        assertTrue(telegram.await(10), "не все сообщения дошли до Telegram");
+        List<Long> times = telegram.arrivals(42);
+        assertEquals(3, times.size());
+        for (int i = 1; i < times.size(); i++)
+        {
+            long gapMillis = TimeUnit.NANOSECONDS.toMillis(times.get(i) - times.get(i - 1));
+            assertTrue(gapMillis >= 900, "сообщения в один чат чаще раза в секунду: " + gapMillis + " мс");
+        }
+    }
+
+    @Test
+    void limitsTotalRateAcrossChats() throws InterruptedException
+    {
+        // 30 сообщений уходят сразу, остальные 15 - со скоростью 30 в секунду
+        int count = 45;
+        telegram.expect(count);
+        long start = System.nanoTime();
+        for (int chatId = 1; chatId <= count; chatId++)
+        {
+            dispatcher.submit(message(chatId, "уведомление"));
+        }
+
+        assertTrue(telegram.await(10), "не все сообщения дошли до Telegram");
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(telegram.lastArrival() - start);
+        assertTrue(elapsedMillis >= 400, "общий лимит не соблюден: " + count + " сообщений за " + elapsedMillis + " мс");
+        waitUntilDelivered();
+    }
+
+    @Test
+    void retriesAfterTooManyRequests() throws InterruptedException
+    {
+        telegram.rejectNext(1);
+        telegram.expect(2);
+        dispatcher.submit(message(7, "курс BTC"));
+
+        assertTrue(telegram.await(10), "сообщение не было отправлено повторно");
+        List<Long> times = telegram.arrivals(7);
+        assertEquals(2, times.size());
+        long pauseMillis = TimeUnit.NANOSECONDS.toMillis(times.get(1) - times.get(0));
+        assertTrue(pauseMillis >= 950, "повтор раньше retry_after: " + pauseMillis + " мс");
+
+        waitUntilDelivered();
+        String stats = dispatcher.getStats();
+        assertTrue(stats.contains("sent=1"), stats);
+        assertTrue(stats.contains("retried=1"), stats);
+        assertTrue(stats.contains("failed=0"), stats);
+    }
+
+    @Test
+    void givesUpAfterRepeatedTooManyRequests() throws InterruptedException
+    {
+        telegram.rejectNext(3);
+        telegram.expect(3);
+        dispatcher.submit(message(9, "курс ETH"));
+
+        assertTrue(telegram.await(10), "ожидалось три попытки отправки");
+        waitUntilDelivered();
+        String stats = dispatcher.getStats();
+        assertTrue(stats.contains("sent=0"), stats);
+        assertTrue(stats.contains("retried=2"), stats);
+        assertTrue(stats.contains("failed=1"), stats);
+    }
+
+    private void waitUntilDelivered() throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (dispatcher.getQueueDepth() > 0 && System.nanoTime() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(0, dispatcher.getQueueDepth());
+    }
+
+    private static SendMessage message(long chatId, String text)
+    {
+        SendMessage message = new SendMessage();
+        message.setChatId(String.valueOf(chatId));
+        message.setText(text);
+        return message;
+    }
+
+    // Фейковый Bot API: время каждого запроса по чатам и заданное число ответов 429
+    private static class FakeTelegram extends Dispatcher
+    {
+        private final Map<Long, List<Long>> arrivals = new ConcurrentHashMap<>();
+        private final AtomicInteger rejectionsLeft = new AtomicInteger();
+        private volatile long lastArrival;
+        private volatile CountDownLatch expected = new CountDownLatch(0);
+
+        void expect(int requests)
+        {
+            expected = new CountDownLatch(requests);
+        }
+
+        void rejectNext(int requests)
+        {
+            rejectionsLeft.set(requests);
+        }
+
+        boolean await(int seconds) throws InterruptedException
+        {
+            return expected.await(seconds, TimeUnit.SECONDS);
+        }
+
+        List<Long> arrivals(long chatId)
+        {
+            return new ArrayList<>(arrivals.getOrDefault(chatId, List.of()));
+        }
+
+        long lastArrival()
+        {
+            return lastArrival;
+        }
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request)
+        {
+            long now = System.nanoTime();
+            long chatId = new JSONObject(request.getBody().utf8()).getLong("chat_id");
+            arrivals.computeIfAbsent(chatId, id -> new CopyOnWriteArrayList<>()).add(now);
+            lastArrival = now;
+
+            boolean reject = rejectionsLeft.getAndUpdate(left -> Math.max(0, left - 1)) > 0;
+            MockResponse response = new MockResponse.Builder()
+                    .code(reject ? 429 : 200)
+                    .setHeader("Content-Type", "application/json")
+                    .body(reject ? TOO_MANY_REQUESTS : OK_RESPONSE)
+                    .build();
+            expected.countDown();
+            return response;
+        }
+    }
+}
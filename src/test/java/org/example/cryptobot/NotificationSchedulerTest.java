@@ -0,0 +1,72 @@
+package org.example.cryptobot;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Повтор уведомлений, которые не поместились в очередь рассылки
+class NotificationSchedulerTest
+{
+    private final BlockingQueue<DatabaseHelper.ScheduledNotification> fired = new LinkedBlockingQueue<>();
+    private final NotificationScheduler scheduler = new NotificationScheduler((due, firedAtSeconds) -> fired.addAll(due));
+
+    @AfterEach
+    void tearDown()
+    {
+        scheduler.stop();
+    }
+
+    @Test
+    void retriesDroppedNotificationSoonInsteadOfAfterInterval() throws Exception
+    {
+        scheduleOverdue(1, "BTC", 60);
+        scheduler.start();
+        DatabaseHelper.ScheduledNotification first = fired.poll(5, TimeUnit.SECONDS);
+        assertNotNull(first);
+
+        // Без повтора следующее уведомление было бы только через час
+        long retriedAt = System.nanoTime();
+        scheduler.retry(first, 200);
+        DatabaseHelper.ScheduledNotification retried = fired.poll(5, TimeUnit.SECONDS);
+        assertNotNull(retried, "повтор не наступил");
+        assertEquals("BTC", retried.getCurrency());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - retriedAt) >= 150);
+
+        // После повтора уведомление снова идет по обычному интервалу
+        assertNull(fired.poll(500, TimeUnit.MILLISECONDS));
+        assertEquals(1, scheduler.size());
+    }
+
+    @Test
+    void skipsRetryWhenSubscriptionWasCancelledOrChanged() throws Exception
+    {
+        scheduleOverdue(1, "BTC", 60);
+        scheduleOverdue(2, "ETH", 60);
+        scheduler.start();
+        List<DatabaseHelper.ScheduledNotification> due = List.of(
+                fired.poll(5, TimeUnit.SECONDS), fired.poll(5, TimeUnit.SECONDS));
+
+        scheduler.cancel(1, "BTC");
+        scheduler.schedule(2, "ETH", 30, System.currentTimeMillis() / 1000);
+        for (DatabaseHelper.ScheduledNotification notification : due)
+        {
+            scheduler.retry(notification, 100);
+        }
+
+        assertNull(fired.poll(500, TimeUnit.MILLISECONDS));
+        assertEquals(1, scheduler.size());
+    }
+
+    // Подписка, последнее уведомление по которой было два интервала назад
+    private void scheduleOverdue(long userId, String currency, int intervalMinutes)
+    {
+        long lastNotification = System.currentTimeMillis() / 1000 - TimeUnit.MINUTES.toSeconds(2L * intervalMinutes);
+        scheduler.schedule(userId, currency, intervalMinutes, lastNotification);
+    }
+}
@@ -0,0 +1,222 @@
+package org.example.cryptobot;
+
+import mockwebserver3.Dispatcher;
+import mockwebserver3.MockResponse;
+import mockwebserver3.MockWebServer;
+import mockwebserver3.RecordedRequest;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Поток котировок против фейкового стримера CryptoCompare: после подписки стример
+// проигрывает записанную сессию из src/test/resources/stream, а тест обрывает соединение
+// и отказывает в переподключении, чтобы проверить очистку табло и задержки повторов
+class PriceStreamTest
+{
+    private static final String BTC = "5~CCCAGG~BTC~USD";
+    private static final String ETH = "5~CCCAGG~ETH~USD";
+    private static final String NOPE = "5~CCCAGG~NOPE~USD";
+
+    private final FakeStreamer streamer = new FakeStreamer(loadSession());
+    private final PriceBoard board = new PriceBoard();
+    private final List<String> published = new CopyOnWriteArrayList<>();
+    private MockWebServer server;
+    private PriceStream stream;
+
+    @BeforeEach
+    void setUp() throws IOException
+    {
+        server = new MockWebServer();
+        server.setDispatcher(streamer);
+        server.start();
+        stream = new PriceStream(new OkHttpClient(), server.url("/v2").toString(), board,
+                (symbol, price) -> published.add(symbol + "=" + price));
+    }
+
+    @AfterEach
+    void tearDown()
+    {
+        stream.stop();
+        server.close();
+    }
+
+    @Test
+    void subscribesAndPutsRecordedTicksOnBoard() throws Exception
+    {
+        stream.watch(List.of("BTC", "ETH", "NOPE"));
+        stream.start();
+        waitFor(() -> published.size() == 4, "котировки записанной сессии");
+
+        // Одно сообщение подписки на все валюты, как только соединение открыто
+        String subscribe = streamer.received.get(0);
+        assertTrue(subscribe.startsWith("{\"action\":\"SubAdd\""), subscribe);
+        assertTrue(subscribe.contains(BTC) && subscribe.contains(ETH) && subscribe.contains(NOPE), subscribe);
+
+        // Сообщения без PRICE (только объем), heartbeat и отказ в подписке на табло не попадают
+        assertEquals(List.of("BTC=64211.37", "ETH=3141.59", "BTC=64230.05", "ETH=3139.12"), published);
+        assertTrue(stream.isLive());
+        assertEquals(2, board.size());
+        assertEquals(64230.05, board.get("BTC", 60_000).getPrice());
+        assertEquals(3139.12, board.get("ETH", 60_000).getPrice());
+        assertNull(board.get("NOPE", 60_000));
+
+        // Изменения подписки на живом соединении отправляются сразу и только разницей
+        stream.watch(List.of("BTC", "SOL"));
+        waitFor(() -> streamer.received.size() == 2, "подписка на SOL");
+        assertEquals("{\"action\":\"SubAdd\",\"subs\":[\"5~CCCAGG~SOL~USD\"]}", streamer.received.get(1));
+
+        stream.retain(List.of("BTC", "SOL"));
+        waitFor(() -> streamer.received.size() == 3, "отписка от лишних валют");
+        String unsubscribe = streamer.received.get(2);
+        assertTrue(unsubscribe.startsWith("{\"action\":\"SubRemove\""), unsubscribe);
+        assertTrue(unsubscribe.contains(ETH) && unsubscribe.contains(NOPE) && !unsubscribe.contains(BTC), unsubscribe);
+    }
+
+    @Test
+    void clearsBoardOnDisconnectAndReconnectsWithBackoff() throws Exception
+    {
+        stream.watch(List.of("BTC", "ETH"));
+        stream.start();
+        waitFor(() -> board.size() == 2, "цены на табло");
+
+        // Стример закрывает соединение, а первое переподключение получает 503
+        streamer.refuseNext(1);
+        long closedAt = System.nanoTime();
+        streamer.closeCurrent();
+        waitFor(() -> !stream.isLive(), "обрыв соединения");
+        assertEquals(0, board.size(), "без потока табло должно быть пустым");
+        assertNull(board.get("BTC", 60_000));
+
+        // Повторы через 1 с и 2 с, после успешного подключения подписка восстанавливается
+        waitFor(() -> stream.isLive() && board.size() == 2, "переподключение");
+        assertEquals(3, streamer.attempts.size());
+        long firstRetry = millisBetween(closedAt, streamer.attempts.get(1));
+        long secondRetry = millisBetween(streamer.attempts.get(1), streamer.attempts.get(2));
+        assertTrue(firstRetry >= 900 && firstRetry < 1900, "первый повтор через " + firstRetry + " мс");
+        assertTrue(secondRetry >= 1900, "второй повтор через " + secondRetry + " мс");
+        assertTrue(stream.getStats().contains("переподключений 2"), stream.getStats());
+
+        // Успешное подключение сбрасывает задержку к минимальной
+        long closedAgainAt = System.nanoTime();
+        streamer.closeCurrent();
+        waitFor(() -> streamer.attempts.size() == 4, "переподключение после сброса задержки");
+        long resetRetry = millisBetween(closedAgainAt, streamer.attempts.get(3));
+        assertTrue(resetRetry < 1900, "повтор после сброса через " + resetRetry + " мс");
+        waitFor(() -> stream.isLive() && board.size() == 2, "цены после переподключения");
+    }
+
+    private static long millisBetween(long fromNanos, long toNanos)
+    {
+        return TimeUnit.NANOSECONDS.toMillis(toNanos - fromNanos);
+    }
+
+    private static void waitFor(BooleanSupplier condition, String what) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline)
+        {
+            Thread.sleep(5);
+        }
+        assertTrue(condition.getAsBoolean(), "не дождались: " + what);
+    }
+
+    private static List<String> loadSession()
+    {
+        try (InputStream in = PriceStreamTest.class.getResourceAsStream("/stream/cccagg-session.jsonl"))
+        {
+            if (in == null)
+            {
+                throw new IllegalStateException("Нет записанной сессии стримера");
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8).lines()
+                    .filter(line -> !line.isBlank())
+                    .toList();
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Фейковый стример: приветствие при подключении, записанная сессия после первой подписки.
+    // Запоминает время каждой попытки подключения и все сообщения клиента
+    private static class FakeStreamer extends Dispatcher
+    {
+        private final List<String> session;
+        private final List<Long> attempts = new CopyOnWriteArrayList<>();
+        private final List<String> received = new CopyOnWriteArrayList<>();
+        private final AtomicInteger refusals = new AtomicInteger();
+        private volatile WebSocket current;
+
+        FakeStreamer(List<String> session)
+        {
+            this.session = session;
+        }
+
+        void refuseNext(int count)
+        {
+            refusals.set(count);
+        }
+
+        void closeCurrent()
+        {
+            current.close(1001, "streamer restart");
+        }
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request)
+        {
+            attempts.add(System.nanoTime());
+            if (refusals.getAndUpdate(left -> Math.max(0, left - 1)) > 0)
+            {
+                return new MockResponse.Builder().code(503).build();
+            }
+            return new MockResponse.Builder().webSocketUpgrade(new Connection()).build();
+        }
+
+        private class Connection extends WebSocketListener
+        {
+            private boolean replayed;
+
+            @Override
+            public void onOpen(WebSocket webSocket, Response response)
+            {
+                current = webSocket;
+                webSocket.send("{\"TYPE\":\"20\",\"MESSAGE\":\"STREAMERWELCOME\",\"SERVER_UPTIME_SECONDS\":1262462}");
+            }
+
+            @Override
+            public void onMessage(WebSocket webSocket, String text)
+            {
+                received.add(text);
+                if (!replayed && text.contains("\"SubAdd\""))
+                {
+                    replayed = true;
+                    session.forEach(webSocket::send);
+                }
+            }
+
+            @Override
+            public void onClosing(WebSocket webSocket, int code, String reason)
+            {
+                webSocket.close(code, null);
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package org.example.cryptobot;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Поиск валюты по справочнику из ~10 000 монет (CoinListFixtures): полное название,
+// символ с опечаткой, начало названия и запрос без совпадений. Ответ на ввод пользователя
+// должен укладываться с большим запасом в 1 мс.
+// Запуск: mvn -Pjmh test -DskipTests -Djmh.args="SymbolSearchIndexBenchmark"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SymbolSearchIndexBenchmark
+{
+    @Param({"bitcoin", "ETHH", "solan", "zzzzqqqq"})
+    public String query;
+
+    private SymbolRegistry registry;
+
+    @Setup
+    public void setUp()
+    {
+        registry = CoinListFixtures.registry(CoinListFixtures.COIN_COUNT);
+    }
+
+    @Benchmark
+    public List<String> search()
+    {
+        return registry.search(query, 5);
+    }
+}
@@ -0,0 +1,59 @@
+package org.example.cryptobot;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Нечеткий поиск по справочнику из ~10 000 монет, среди которых есть похожие
+// на искомые символы и названия
+class SymbolSearchIndexTest
+{
+    private static SymbolRegistry registry;
+
+    @BeforeAll
+    static void loadCoinList()
+    {
+        registry = CoinListFixtures.registry(CoinListFixtures.COIN_COUNT);
+        assertEquals(CoinListFixtures.COIN_COUNT, registry.size());
+    }
+
+    @Test
+    void findsSymbolByFullName()
+    {
+        List<String> found = registry.search("bitcoin", 5);
+        assertEquals("BTC", found.get(0), found.toString());
+        // Остальные монеты со словом Bitcoin идут следом, а не теряются
+        assertTrue(found.contains("BCH"), found.toString());
+    }
+
+    @Test
+    void findsSymbolWithTypo()
+    {
+        List<String> found = registry.search("ETHH", 5);
+        assertEquals("ETH", found.get(0), found.toString());
+    }
+
+    @Test
+    void findsSymbolByNamePrefix()
+    {
+        List<String> found = registry.search("solan", 5);
+        assertEquals("SOL", found.get(0), found.toString());
+    }
+
+    @Test
+    void prefersExactSymbolAndIgnoresCaseAndSpaces()
+    {
+        assertEquals("SOL", registry.search("  sol ", 5).get(0));
+        assertEquals("ETC", registry.search("Ethereum   Classic", 5).get(0));
+    }
+
+    @Test
+    void returnsNothingForUnrelatedQuery()
+    {
+        assertTrue(registry.search("zzzzqqqq", 5).isEmpty());
+        assertTrue(registry.search("   ", 5).isEmpty());
+    }
+}
@@ -0,0 +1,173 @@
+package org.example.cryptobot;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Нагрузочный тест webhook: несколько клиентов отправляют синтетические обновления,
+// в лог выводятся пропускная способность и задержки ответа 200 OK
+class WebhookServerLoadTest
+{
+    private static final String SECRET = "load-test-secret";
+    private static final int CLIENTS = 8;
+    private static final int UPDATES_PER_CLIENT = 250;
+
+    private final Set<Integer> handledUpdates = ConcurrentHashMap.newKeySet();
+    // Очередь бота заполнена: обработчик отказывается принимать обновления
+    private volatile boolean queueFull;
+    private WebhookServer server;
+    private HttpClient client;
+    private URI webhookUri;
+
+    @BeforeEach
+    void setUp() throws IOException
+    {
+        server = new WebhookServer(0, "/webhook", SECRET, this::handle);
+        server.start();
+        webhookUri = URI.create("http://localhost:" + server.getPort() + "/webhook");
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @AfterEach
+    void tearDown()
+    {
+        server.stop();
+    }
+
+    // Прогревочные обновления имеют отрицательные номера и в подсчет не входят
+    private boolean handle(Update update)
+    {
+        if (queueFull)
+        {
+            return false;
+        }
+        if (update.getUpdateId() >= 0)
+        {
+            handledUpdates.add(update.getUpdateId());
+        }
+        return true;
+    }
+
+    @Test
+    void acceptsSyntheticUpdatesUnderLoad() throws Exception
+    {
+        // Прогрев: JIT и соединения не должны попадать в измерение
+        for (int i = 0; i < 200; i++)
+        {
+            assertEquals(200, post(update(-1 - i), SECRET).statusCode());
+        }
+
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        AtomicInteger nextUpdateId = new AtomicInteger();
+        long start = System.nanoTime();
+        List<Future<long[]>> results = new ArrayList<>();
+        for (int c = 0; c < CLIENTS; c++)
+        {
+            results.add(clients.submit(() ->
+            {
+                long[] latencies = new long[UPDATES_PER_CLIENT];
+                for (int i = 0; i < UPDATES_PER_CLIENT; i++)
+                {
+                    String body = update(nextUpdateId.getAndIncrement());
+                    long sentAt = System.nanoTime();
+                    HttpResponse<Void> response = post(body, SECRET);
+                    latencies[i] = System.nanoTime() - sentAt;
+                    assertEquals(200, response.statusCode());
+                }
+                return latencies;
+            }));
+        }
+
+        long[] all = new long[CLIENTS * UPDATES_PER_CLIENT];
+        int filled = 0;
+        for (Future<long[]> result : results)
+        {
+            long[] latencies = result.get(60, TimeUnit.SECONDS);
+            System.arraycopy(latencies, 0, all, filled, latencies.length);
+            filled += latencies.length;
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        clients.shutdown();
+
+        Arrays.sort(all);
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("Webhook: %d updates from %d clients in %.2f s, %.0f updates/s, " +
+                        "latency p50 %.2f ms, p99 %.2f ms, max %.2f ms; %s%n",
+                all.length, CLIENTS, seconds, all.length / seconds,
+                percentileMillis(all, 0.5), percentileMillis(all, 0.99), all[all.length - 1] / 1e6,
+                server.getStats());
+
+        // 200 OK отправляется после постановки в очередь, поэтому все обновления уже приняты
+        assertEquals(all.length, handledUpdates.size());
+    }
+
+    @Test
+    void asksTelegramToRetryWhenQueueIsFull() throws Exception
+    {
+        queueFull = true;
+        assertEquals(503, post(update(1), SECRET).statusCode());
+        assertTrue(handledUpdates.isEmpty());
+
+        // Повторная доставка того же обновления после разгрузки очереди принимается
+        queueFull = false;
+        assertEquals(200, post(update(1), SECRET).statusCode());
+        assertEquals(Set.of(1), handledUpdates);
+        assertTrue(server.getStats().contains("received=1, rejected=0, overloaded=1"), server.getStats());
+    }
+
+    @Test
+    void rejectsUpdatesWithoutSecret() throws Exception
+    {
+        // После отказа без чтения тела HttpServer закрывает соединение, поэтому у каждого запроса свой клиент
+        assertEquals(401, post(update(1), "wrong-secret").statusCode());
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        assertEquals(400, post("{not json", SECRET).statusCode());
+        assertTrue(handledUpdates.isEmpty());
+        assertTrue(server.getStats().contains("rejected=2"), server.getStats());
+    }
+
+    private HttpResponse<Void> post(String body, String secret) throws IOException, InterruptedException
+    {
+        HttpRequest request = HttpRequest.newBuilder(webhookUri)
+                .header("Content-Type", "application/json")
+                .header("X-Telegram-Bot-Api-Secret-Token", secret)
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding());
+    }
+
+    // Обычное текстовое сообщение в личном чате, как его присылает Telegram
+    private static String update(int updateId)
+    {
+        long chatId = 100_000L + Math.floorMod(updateId, 1000);
+        return "{\"update_id\":" + updateId + ",\"message\":{\"message_id\":" + updateId + ",\"date\":1700000000," +
+                "\"chat\":{\"id\":" + chatId + ",\"type\":\"private\"}," +
+                "\"from\":{\"id\":" + chatId + ",\"is_bot\":false,\"first_name\":\"Test\"}," +
+                "\"text\":\"/price BTC\"}}";
+    }
+
+    private static double percentileMillis(long[] sorted, double percentile)
+    {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}